@@ -21,26 +21,39 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import org.bridgedb.DataSource;
-import org.bridgedb.IDMapper;
 import org.bridgedb.IDMapperException;
 import org.bridgedb.Xref;
 import org.pathvisio.core.ApplicationEvent;
 import org.pathvisio.core.Engine.ApplicationEventListener;
+import org.pathvisio.core.data.GdbManager.GdbEvent;
+import org.pathvisio.core.data.GdbManager.GdbEventListener;
+import org.pathvisio.core.debug.Logger;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.core.preferences.GlobalPreference;
 import org.pathvisio.core.preferences.PreferenceManager;
@@ -53,8 +66,15 @@ import org.pathvisio.desktop.PvDesktop;
 import org.pathvisio.desktop.plugin.Plugin;
 import org.pathvisio.regint.dialog.LoadFileWizard;
 import org.pathvisio.regint.dialog.PreferenceDialog;
+import org.pathvisio.regint.impl.AliasIndex;
+import org.pathvisio.regint.impl.AttributeCache;
+import org.pathvisio.regint.impl.FileSelection;
 import org.pathvisio.regint.impl.Interaction;
+import org.pathvisio.regint.impl.InteractionIndex;
+import org.pathvisio.regint.impl.PathwayPrefetch;
+import org.pathvisio.regint.impl.ResultsCache;
 import org.pathvisio.regint.impl.ResultsObj;
+import org.pathvisio.regint.impl.XrefMappingCache;
 import org.pathvisio.regint.impl.gui.RegIntTab;
 import org.pathvisio.regint.impl.preferences.RegIntPreferences;
 import org.pathvisio.regint.impl.util.ImportInformation;
@@ -66,7 +86,14 @@ import org.pathvisio.regint.impl.util.ImportInformation;
  * @author Stefan van Helden
  * @author mku
  */
-public class RegIntPlugin implements Plugin, ApplicationEventListener, SelectionListener, ChangeListener {
+public class RegIntPlugin implements Plugin, ApplicationEventListener, SelectionListener, ChangeListener,
+		GdbEventListener {
+
+	// number of canonical nodes of a data node from which their interactions
+	// are looked up in parallel
+	private static final int PARALLEL_ALIASES = 8;
+	// threads of the prefetch, which runs next to the queries of the user
+	private static final int PREFETCH_THREADS = 2;
 
 	private PvDesktop desktop;
 	private RegIntPlugin plugin;
@@ -85,11 +112,42 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 
 	// interaction files that are loaded by the user
 	private ArrayList<File> interactionFiles;
-
-	// interactions for all xrefs in the interaction files
-	private Map<Xref, List<Interaction>> interactions;
-	// all used datasources in the different interaction file
-	private List<DataSource> usedDataSources;
+	// files of the running import that are not in the interaction map yet,
+	// only accessed on the event dispatch thread
+	private Set<File> pendingFiles;
+	// the files imported so far by the running import, which become the
+	// selected files
+	private LinkedHashSet<File> importedFiles;
+
+	// interactions for all xrefs in the interaction files, replaced by a new
+	// published index after every import
+	private volatile InteractionIndex interactionIndex;
+	// incremented when the gene database changes, the alias index of the
+	// interaction map is only valid for the generation it was mapped with
+	private final AtomicLong gdbGeneration = new AtomicLong();
+	// all used datasources in the different interaction file, added by the
+	// import while queries read them
+	private CopyOnWriteArrayList<DataSource> usedDataSources;
+
+	// mapping results shared by the import, queries and backpage
+	private XrefMappingCache mappingCache;
+
+	// symbols and other attributes of the interaction partners
+	private AttributeCache attributeCache;
+
+	// results of findInteractions
+	private ResultsCache resultsCache;
+
+	// background lookups of the data nodes of the open pathways, only
+	// accessed on the event dispatch thread
+	private Map<VPathway, PathwayPrefetch> prefetches;
+	private ExecutorService queryExecutor;
+	// runs the prefetch at a low priority, so it does not delay the queries
+	// of the user in the queryExecutor
+	private ExecutorService prefetchExecutor;
+	// looks up the interactions of the aliases of a data node in parallel,
+	// separate from the queryExecutor that waits for the results
+	private ExecutorService aliasExecutor;
 
 	// import dialog data
 	private List<ImportInformation> importInformationList;
@@ -99,9 +157,29 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 		this.desktop = desktop;
 		plugin = this;
 		interactionFiles = new ArrayList<File>();
-		interactions = new HashMap<Xref, List<Interaction>>();
+		pendingFiles = new LinkedHashSet<File>();
+		importedFiles = new LinkedHashSet<File>();
+		interactionIndex = new InteractionIndex();
+		interactionIndex.publish();
 		importInformationList = new ArrayList<ImportInformation>();
-		usedDataSources = new ArrayList<DataSource>();
+		usedDataSources = new CopyOnWriteArrayList<DataSource>();
+		resultsCache = new ResultsCache();
+		prefetches = new HashMap<VPathway, PathwayPrefetch>();
+		queryExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "RegInt prefetch");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		aliasExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		mappingCache = new XrefMappingCache(desktop.getSwingEngine().getGdbManager());
+		desktop.getSwingEngine().getGdbManager().addGdbEventListener(mappingCache);
+		attributeCache = new AttributeCache(desktop.getSwingEngine().getGdbManager());
+		desktop.getSwingEngine().getGdbManager().addGdbEventListener(attributeCache);
+		desktop.getSwingEngine().getGdbManager().addGdbEventListener(this);
 		regIntMenu = new JMenu("RegInt Plugin");
 		registerMenuItems();
 		createSidePanel();
@@ -144,6 +222,15 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 	@Override
 	public void done() {
 		desktop.unregisterSubMenu("Plugins", regIntMenu);
+		desktop.getSwingEngine().getGdbManager().removeGdbEventListener(mappingCache);
+		desktop.getSwingEngine().getGdbManager().removeGdbEventListener(attributeCache);
+		desktop.getSwingEngine().getGdbManager().removeGdbEventListener(this);
+		for (PathwayPrefetch prefetch : prefetches.values()) {
+			prefetch.cancel();
+		}
+		queryExecutor.shutdownNow();
+		prefetchExecutor.shutdownNow();
+		aliasExecutor.shutdownNow();
 		sidebarTabbedPane.remove(regIntTab);
 	}
 
@@ -151,27 +238,82 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 	public void applicationEvent(ApplicationEvent e) {
 		switch (e.getType()) {
 		case VPATHWAY_CREATED: {
-			StringBuffer geneIDs = new StringBuffer();
-			((VPathway) e.getSource()).addSelectionListener(this);
-			for (VPathwayElement o : ((VPathway) e.getSource()).getDrawingObjects()) {
+			VPathway vPathway = (VPathway) e.getSource();
+			vPathway.addSelectionListener(this);
+			Set<Xref> xrefs = new LinkedHashSet<Xref>();
+			for (VPathwayElement o : vPathway.getDrawingObjects()) {
 				if (o instanceof GeneProduct) {
-					String geneID = ((GeneProduct) o).getPathwayElement().getTextLabel();
-					geneIDs.append(' ');
-					geneIDs.append(geneID);
+					PathwayElement elm = ((GeneProduct) o).getPathwayElement();
+					if (elm.getDataSource() != null) {
+						xrefs.add(elm.getXref());
+					}
 				}
 			}
+			startPrefetch(vPathway, xrefs);
 		}
 			break;
 		case VPATHWAY_DISPOSED: {
-			((VPathway) e.getSource()).removeSelectionListener(this);
+			VPathway vPathway = (VPathway) e.getSource();
+			vPathway.removeSelectionListener(this);
+			PathwayPrefetch prefetch = prefetches.remove(vPathway);
+			if (prefetch != null) {
+				prefetch.cancel();
+			}
 		}
 		default:
 			break;
 		}
 	}
 
+	/**
+	 * Starts looking up the interactions of the data nodes of a pathway in
+	 * the background.
+	 */
+	private void startPrefetch(VPathway vPathway, Collection<Xref> xrefs) {
+		PathwayPrefetch prefetch = new PathwayPrefetch(plugin, xrefs);
+		PathwayPrefetch previous = prefetches.put(vPathway, prefetch);
+		if (previous != null) {
+			previous.cancel();
+		}
+		if (!interactionIndex.isEmpty()) {
+			prefetch.start(prefetchExecutor);
+		}
+	}
+
+	/**
+	 * Discards the cached results and looks up the interactions of the data
+	 * nodes of all open pathways again, call when the interactions or the
+	 * selected files changed.
+	 */
+	public void interactionsChanged() {
+		Logger.log.info("Result cache: " + resultsCache.getHits() + " hits, " + resultsCache.getMisses()
+				+ " misses, " + resultsCache.getEvictions() + " evictions");
+		resultsCache.invalidate();
+		refreshPrefetches();
+	}
+
+	private void refreshPrefetches() {
+		for (Map.Entry<VPathway, PathwayPrefetch> entry : new ArrayList<Map.Entry<VPathway, PathwayPrefetch>>(
+				prefetches.entrySet())) {
+			startPrefetch(entry.getKey(), entry.getValue().getXrefs());
+		}
+	}
+
+	@Override
+	public void gdbEvent(GdbEvent e) {
+		// the identifiers in the alias index depend on the gene database
+		gdbGeneration.incrementAndGet();
+		resultsCache.invalidate();
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				// the prefetched results were discarded with the cache
+				refreshPrefetches();
+			}
+		});
+	}
+
 	public void selectionEvent(SelectionEvent e) {
-		if (interactions.size() > 0) {
+		if (!interactionIndex.isEmpty()) {
 			switch (e.type) {
 			case SelectionEvent.OBJECT_ADDED:
 				if (e.selection.size() == 1) {
@@ -206,72 +348,213 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 
 	/**
 	 * Looks through the interactions map to find interactions that contain the
-	 * specified {@link Xref}.
+	 * specified {@link Xref}. The interactions of all canonical nodes the Xref
+	 * maps to are merged, so files that use different identifier systems all
+	 * contribute; a partner found through several nodes is listed once, with
+	 * the interaction from most selected files.
 	 * 
-	 * @return a results object with the interactions containing the Xref
+	 * @return a results object with the interactions containing the Xref, or
+	 *         null if none of its nodes has interactions
 	 */
 	public ResultsObj findInteractions(Xref currentXref) throws IDMapperException {
-		ResultsObj results = null;
-		String connectionString = PreferenceManager.getCurrent().get(GlobalPreference.DB_CONNECTSTRING_GDB);
-		if (connectionString.equals("idmapper-pgdb:none")) {
-			JOptionPane.showMessageDialog(desktop.getFrame(),
-					"Please select a Gene Database first.\n(Data > Select Gene Database)");
-		} else {
-			DataSource[] usedDataSourceArray = new DataSource[getUsedDataSources().size()];
-			usedDataSourceArray = getUsedDataSources().toArray(usedDataSourceArray);
-			Set<Xref> crfs = new HashSet<Xref>();
-			crfs.add(currentXref);
-			for (IDMapper mapper : getDesktop().getSwingEngine().getGdbManager().getCurrentGdb().getMappers()) {
-				Set<Xref> someXrefs = mapper.mapID(currentXref, usedDataSourceArray);
-				crfs.addAll(someXrefs);
-			}
-			for (Xref xref : crfs) {
-				if (interactions.containsKey(xref)) {
-					results = checkInteractions(xref);
-				}
+		ResultsObj cached = resultsCache.get(currentXref);
+		if (cached != ResultsCache.NOT_CACHED) {
+			return cached;
+		}
+		long generation = resultsCache.getGeneration();
+		ResultsObj results = queryInteractions(currentXref);
+		if (results != null && isGeneDatabaseSelected()) {
+			// the symbols are used as labels and to sort the partners
+			try {
+				attributeCache.fetchAll(results.getRegulatorMap().keySet());
+				attributeCache.fetchAll(results.getTargetMap().keySet());
+			} catch (IDMapperException e) {
+				e.printStackTrace();
 			}
 		}
+		if (!isAliasIndexStale(interactionIndex) || isGeneDatabaseSelected()) {
+			// without a gene database the Xref could not be mapped
+			resultsCache.put(currentXref, results, generation);
+		}
 		return results;
 	}
 
-	private ResultsObj checkInteractions(Xref xref) {
-		ResultsObj results = new ResultsObj(xref);
+	private ResultsObj queryInteractions(Xref currentXref) throws IDMapperException {
+		// the whole query uses the same version of the index, an import can
+		// publish a new one meanwhile
+		final InteractionIndex index = interactionIndex;
+		List<Xref> nodes = new ArrayList<Xref>();
+		for (Xref xref : findNodes(index, currentXref)) {
+			if (index.hasInteractions(xref)) {
+				nodes.add(xref);
+			}
+		}
+		if (nodes.isEmpty()) {
+			return null;
+		}
+		final FileSelection selection = getFileSelection(index);
+		ResultsObj results = new ResultsObj(currentXref);
+		if (nodes.size() < PARALLEL_ALIASES) {
+			for (Xref node : nodes) {
+				checkInteractions(index, node, selection, results);
+			}
+			return results;
+		}
 
-		for (Interaction interaction : interactions.get(xref)) {
-			for (File file : interaction.getFiles()) {
-				if (isFileSelected(file)) {
-					addInteractionPartners(interaction, xref, results);
+		List<Future<ResultsObj>> partials = new ArrayList<Future<ResultsObj>>();
+		for (final Xref node : nodes) {
+			partials.add(aliasExecutor.submit(new Callable<ResultsObj>() {
+				public ResultsObj call() {
+					ResultsObj partial = new ResultsObj(node);
+					checkInteractions(index, node, selection, partial);
+					return partial;
 				}
+			}));
+		}
+		for (Future<ResultsObj> future : partials) {
+			ResultsObj partial;
+			try {
+				partial = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IDMapperException("Query interrupted");
+			} catch (ExecutionException e) {
+				throw new IDMapperException(e.getCause());
+			}
+			for (Map.Entry<Xref, Interaction> entry : partial.getTargetMap().entrySet()) {
+				putPartner(results.getTargetMap(), entry.getKey(), entry.getValue(), selection);
+			}
+			for (Map.Entry<Xref, Interaction> entry : partial.getRegulatorMap().entrySet()) {
+				putPartner(results.getRegulatorMap(), entry.getKey(), entry.getValue(), selection);
 			}
 		}
 		return results;
 	}
 
-	private void addInteractionPartners(Interaction interaction, Xref xref, ResultsObj obj) {
-		if (interaction.getRegulator().equals(xref)) {
-			for (Interaction anInteraction : interactions.get(interaction.getTarget())) {
-				if (anInteraction.getRegulator().equals(xref)) {
-					obj.getTargetMap().put(interaction.getTarget(), anInteraction);
-				}
-			}
-		} else if (interaction.getTarget().equals(xref)) {
-			for (Interaction anInteraction : interactions.get(interaction.getRegulator())) {
-				if (anInteraction.getTarget().equals(xref)) {
-					obj.getRegulatorMap().put(interaction.getRegulator(), anInteraction);
+	/**
+	 * Finds the canonical nodes of the interaction map that the specified
+	 * {@link Xref} maps to. Uses the {@link AliasIndex} built during import,
+	 * and only maps the Xref with the gene database if the index is out of
+	 * date.
+	 */
+	private Set<Xref> findNodes(InteractionIndex index, Xref currentXref) throws IDMapperException {
+		if (!isAliasIndexStale(index)) {
+			return index.findNodes(currentXref);
+		}
+		if (!isGeneDatabaseSelected()) {
+			// called from a background thread by the RegIntTab
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					JOptionPane.showMessageDialog(desktop.getFrame(),
+							"Please select a Gene Database first.\n(Data > Select Gene Database)");
 				}
-			}
+			});
+			return Collections.emptySet();
+		}
+		// one snapshot, the import can add data sources meanwhile
+		DataSource[] usedDataSourceArray = getUsedDataSources().toArray(new DataSource[0]);
+		return index.getCanonical(mappingCache.mapID(currentXref, usedDataSourceArray));
+	}
+
+	/**
+	 * @return false if the user did not select a gene database
+	 */
+	public boolean isGeneDatabaseSelected() {
+		String connectionString = PreferenceManager.getCurrent().get(GlobalPreference.DB_CONNECTSTRING_GDB);
+		return !connectionString.equals("idmapper-pgdb:none");
+	}
+
+	/**
+	 * @return the interaction files selected in the preferences. File ids
+	 *         are not changed by an import, so the selection is also valid
+	 *         for later versions of the index.
+	 */
+	public FileSelection getFileSelection() {
+		return getFileSelection(interactionIndex);
+	}
+
+	private FileSelection getFileSelection(InteractionIndex index) {
+		Set<File> selectedFiles = RegIntPreferences.getPreferences().getSelectedIntFiles();
+		if (selectedFiles == null) {
+			// the first import has not finished yet
+			selectedFiles = Collections.emptySet();
+		}
+		return index.getFileSelection(selectedFiles);
+	}
+
+	/**
+	 * Adds the regulators and targets of a canonical node from the selected
+	 * interaction files to the results.
+	 */
+	private void checkInteractions(InteractionIndex index, Xref xref, FileSelection selection, ResultsObj results) {
+		for (Interaction interaction : index.getTargets(xref, selection)) {
+			putPartner(results.getTargetMap(), interaction.getTarget(), interaction, selection);
+		}
+		for (Interaction interaction : index.getRegulators(xref, selection)) {
+			putPartner(results.getRegulatorMap(), interaction.getRegulator(), interaction, selection);
+		}
+	}
+
+	/**
+	 * Adds an interaction partner, or replaces the interaction of a partner
+	 * that was already found if the new interaction is in more selected files.
+	 */
+	private static void putPartner(Map<Xref, Interaction> partners, Xref partner, Interaction interaction,
+			FileSelection selection) {
+		Interaction existing = partners.get(partner);
+		if (existing == null || interaction.countFiles(selection) > existing.countFiles(selection)) {
+			partners.put(partner, interaction);
 		}
 	}
 
-	private boolean isFileSelected(File file) {
-		if (RegIntPreferences.getPreferences().getSelectedIntFiles().contains(file)) {
-			return true;
+	/**
+	 * Shows the files of an import that is started as pending in the tab.
+	 * Call on the event dispatch thread.
+	 */
+	public void importStarted(Collection<File> files) {
+		pendingFiles.clear();
+		pendingFiles.addAll(files);
+		importedFiles = new LinkedHashSet<File>();
+		regIntTab.setPendingFiles(pendingFiles);
+	}
+
+	/**
+	 * Selects a file that was added to the interaction map by the running
+	 * import, and shows the interactions of the selected element again so
+	 * they include the file. The interaction map with the file must already
+	 * be published. Call on the event dispatch thread.
+	 */
+	public void fileImported(File file) {
+		if (!interactionFiles.contains(file)) {
+			interactionFiles.add(file);
 		}
-		return false;
+		pendingFiles.remove(file);
+		importedFiles.add(file);
+		// a new set, queries read the selected files in the background
+		RegIntPreferences.getPreferences().setSelectedIntFiles(new LinkedHashSet<File>(importedFiles));
+		regIntTab.setPendingFiles(pendingFiles);
+		interactionsChanged();
+		updateTab();
+	}
+
+	/**
+	 * Removes the files that were not imported from the pending files, call
+	 * on the event dispatch thread when the import stopped.
+	 */
+	public void importFinished() {
+		pendingFiles.clear();
+		regIntTab.setPendingFiles(pendingFiles);
 	}
 
 	@Override
 	public void stateChanged(ChangeEvent arg0) {
+		updateTab();
+	}
+
+	/**
+	 * Shows the interactions of the selected element if the tab is visible.
+	 */
+	private void updateTab() {
 		if (sidebarTabbedPane.getSelectedComponent().equals(regIntTab)) {
 			if (selectedElem != null && selectedElem.getDataSource() != null) {
 				regIntTab.updatePathwayPanel(selectedElem);
@@ -287,8 +570,37 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 		return interactionFiles;
 	}
 
-	public Map<Xref, List<Interaction>> getInteractions() {
-		return interactions;
+	/**
+	 * @return the current version of the interaction map, which is not
+	 *         changed by imports
+	 */
+	public InteractionIndex getInteractionIndex() {
+		return interactionIndex;
+	}
+
+	/**
+	 * @return the generation of the gene database, which changes every time
+	 *         another gene database is selected
+	 */
+	public long getGdbGeneration() {
+		return gdbGeneration.get();
+	}
+
+	/**
+	 * @return true if the gene database changed since the identifiers in the
+	 *         {@link AliasIndex} of the interaction map were mapped
+	 */
+	public boolean isAliasIndexStale(InteractionIndex index) {
+		return index.getGdbGeneration() != gdbGeneration.get();
+	}
+
+	/**
+	 * Publishes a new version of the interaction map, queries that start
+	 * afterwards use it.
+	 */
+	public void setInteractionIndex(InteractionIndex interactionIndex) {
+		interactionIndex.publish();
+		this.interactionIndex = interactionIndex;
 	}
 
 	public void updateBackpage(final Xref xref, ResultsObj results) {
@@ -299,20 +611,28 @@ public class RegIntPlugin implements Plugin, ApplicationEventListener, Selection
 		return desktop;
 	}
 
+	public XrefMappingCache getMappingCache() {
+		return mappingCache;
+	}
+
+	public AttributeCache getAttributeCache() {
+		return attributeCache;
+	}
+
+	public ResultsCache getResultsCache() {
+		return resultsCache;
+	}
+
 	public List<DataSource> getUsedDataSources() {
 		return usedDataSources;
 	}
 
 	public void addUsedDataSource(DataSource ds) {
-		if (!usedDataSources.contains(ds)) {
-			usedDataSources.add(ds);
-		}
+		usedDataSources.addIfAbsent(ds);
 	}
 
 	public void removeUsedDataSource(DataSource ds) {
-		if (usedDataSources.contains(ds)) {
-			usedDataSources.remove(ds);
-		}
+		usedDataSources.remove(ds);
 	}
 
 	public List<ImportInformation> getImportInformationList() {
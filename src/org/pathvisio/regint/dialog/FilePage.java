@@ -202,7 +202,7 @@ public class FilePage extends WizardPanelDescriptor implements ActionListener {
 			}
 		} else if (ACTION_INPUT.equals(action)) {
 			JFileChooser jfc = new JFileChooser();
-			jfc.addChoosableFileFilter(new SimpleFileFilter("Interaction files", "*.txt|*.csv|*.tab", true));
+			jfc.addChoosableFileFilter(new SimpleFileFilter("Interaction files", "*.txt|*.csv|*.tab|*.gz|*.bgz|*.zip", true));
 			jfc.setMultiSelectionEnabled(true);
 			int result = jfc.showDialog(null, "Select interaction file(s)");
 			String fileNames = "";
@@ -17,20 +17,14 @@
 
 package org.pathvisio.regint.dialog;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -38,19 +32,15 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
-import org.bridgedb.DataSource;
-import org.bridgedb.IDMapper;
 import org.bridgedb.IDMapperException;
-import org.bridgedb.Xref;
 import org.pathvisio.core.debug.StopWatch;
 import org.pathvisio.core.util.ProgressKeeper;
 import org.pathvisio.core.util.ProgressKeeper.ProgressEvent;
 import org.pathvisio.core.util.ProgressKeeper.ProgressListener;
 import org.pathvisio.regint.RegIntPlugin;
-import org.pathvisio.regint.impl.Interaction;
 import org.pathvisio.regint.impl.InteractionMapBuilder;
-import org.pathvisio.regint.impl.preferences.RegIntPreferences;
 import org.pathvisio.regint.impl.util.ImportInformation;
 
 import com.jgoodies.forms.builder.DefaultFormBuilder;
@@ -67,7 +57,8 @@ import com.nexes.wizard.WizardPanelDescriptor;
  */
 public class ImportPage extends WizardPanelDescriptor implements ProgressListener {
 	public static final String IDENTIFIER = "IMPORT_PAGE";
-	private final int PROGRESS_INTERVAL = 50;
+	// milliseconds between updates of the progress bar
+	private static final int PROGRESS_INTERVAL = 100;
 	
 	private RegIntPlugin plugin;
 	
@@ -130,34 +121,13 @@ public class ImportPage extends WizardPanelDescriptor implements ProgressListene
 	}
 
 	public void aboutToDisplayPanel() {
-		// imb = new InteractionMapBuilder(plugin, pk, progressText,
-		// progressSent);
-
 		getWizard().setPageTitle("Load interaction file(s)");
 
-		int x = 0;
-		// get total number of lines for all interaction files
-		for (ImportInformation impInfo : plugin.getImportInformationList()) {
-			try {
-				InputStream is = new BufferedInputStream(new FileInputStream(impInfo.getTxtFile()));
-				try {
-					byte[] c = new byte[1024];
-					int readChars = 0;
-					while ((readChars = is.read(c)) != -1) {
-						for (int i = 0; i < readChars; ++i) {
-							if (c[i] == '\n')
-								++x;
-						}
-					}
-				} finally {
-					is.close();
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
-		pk = new ProgressKeeper(x);
-		progressSent.setMaximum(x);
+		// progress is measured in bytes, so the files don't have to be read
+		// in advance to count the lines
+		int totalWork = InteractionMapBuilder.getTotalWork(plugin.getImportInformationList());
+		pk = new ProgressKeeper(totalWork);
+		progressSent.setMaximum(totalWork);
 
 		setProgressValue(0);
 		setProgressText("");
@@ -167,6 +137,21 @@ public class ImportPage extends WizardPanelDescriptor implements ProgressListene
 	}
 
 	public void displayingPanel() {
+		List<File> files = new ArrayList<File>();
+		for (ImportInformation impInfo : plugin.getImportInformationList()) {
+			files.add(impInfo.getTxtFile());
+		}
+		// each file is selected in the plugin when it is added to the map
+		plugin.importStarted(files);
+		final InteractionMapBuilder imb = new InteractionMapBuilder(plugin, pk, progressText);
+		// the parser threads only count the bytes, the progress bar is
+		// updated from that count at a fixed rate
+		final Timer progressTimer = new Timer(PROGRESS_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setProgressValue(imb.getProgress());
+			}
+		});
+		progressTimer.start();
 		SwingWorker<Void, Void> sw = new SwingWorker<Void, Void>() {
 			@Override
 			protected Void doInBackground() throws Exception {
@@ -174,173 +159,15 @@ public class ImportPage extends WizardPanelDescriptor implements ProgressListene
 				try {
 					stopwatch = new StopWatch();
 					stopwatch.start();
-					for (ImportInformation importInformation : plugin.getImportInformationList()) {
-						progressText.append("Loading " + importInformation.getTxtFile().getName() + "...\n");
-						Map<Xref, List<Interaction>> interactions = plugin.getInteractions();
-						int RegId = importInformation.getIdColumnReg();
-						int TarId = importInformation.getIdColumnTar();
-						FileReader fr = new FileReader(importInformation.getTxtFile());
-						BufferedReader in = new BufferedReader(fr);
-						String line = new String();
-						for (int i = 0; i < importInformation.getFirstDataRow(); i++) {
-							in.readLine();
-						}
-						while ((line = in.readLine()) != null) {
-							String[] str = line.split(importInformation.getDelimiter());
-							if (str.length >= importInformation.getSampleMaxNumCols()) {
-								String regulatorString = str[RegId];
-								String targetString = str[TarId];
-
-								if (!regulatorString.equals("") && !targetString.equals("")) {
-									Xref regulator;
-									DataSource dsReg;
-									Xref target;
-									DataSource dsTar;
-									if (importInformation.isSyscodeFixedReg()) {
-										dsReg = importInformation.getDataSourceReg();
-									} else {
-										dsReg = DataSource
-												.getExistingBySystemCode(str[importInformation.getSyscodeColumnReg()]);
-									}
-									regulator = new Xref(regulatorString, dsReg);
-									plugin.addUsedDataSource(dsReg);
-									if (importInformation.isSyscodeFixedTar()) {
-										dsTar = importInformation.getDataSourceTar();
-									} else {
-										dsTar = DataSource
-												.getExistingBySystemCode(str[importInformation.getSyscodeColumnTar()]);
-									}
-									target = new Xref(targetString, dsTar);
-									plugin.addUsedDataSource(dsTar);
-
-									Interaction thisInteraction = new Interaction(regulator, target,
-											importInformation.getTxtFile());
-
-									if (importInformation.isPMIDColumnEnabled()) {
-										String PMID = str[importInformation.getPMIDColumn()];
-										thisInteraction.setPMID(PMID);
-									}
-									String miscInfo = "<table border=\"1\">";
-									for (int i = 0; i < importInformation.getColNames().length; i++) {
-										if (i != importInformation.getIdColumnReg()
-												&& i != importInformation.getIdColumnTar()) {
-											if (!importInformation.isSyscodeFixedReg()
-													&& i == importInformation.getSyscodeColumnReg()) {
-												// do nothing
-											} else if (!importInformation.isSyscodeFixedTar()
-													&& i == importInformation.getSyscodeColumnTar()) {
-												// do nothing
-											} else if (importInformation.isPMIDColumnEnabled()
-													&& i == importInformation.getPMIDColumn()) {
-												// do nothing
-											} else {
-												miscInfo += "<tr><td>" + importInformation.getColNames()[i]
-														+ "</td><td>" + str[i] + "</td></tr>";
-											}
-										}
-									}
-									miscInfo += "</table>";
-									if (!miscInfo.equals("<table border=\"1\"></table>")) {
-										thisInteraction.setMiscInfo(miscInfo);
-									}
-
-									DataSource[] usedDataSourceArray = new DataSource[plugin.getUsedDataSources()
-											.size()];
-									usedDataSourceArray = plugin.getUsedDataSources().toArray(usedDataSourceArray);
-									Set<Xref> crfsReg = new HashSet<Xref>();
-									crfsReg.add(regulator);
-									Set<Xref> crfsTar = new HashSet<Xref>();
-									crfsTar.add(target);
-									for (IDMapper aMapper : plugin.getDesktop().getSwingEngine().getGdbManager()
-											.getCurrentGdb().getMappers()) {
-										Set<Xref> someRegXrefs = aMapper.mapID(regulator, usedDataSourceArray);
-										crfsReg.addAll(someRegXrefs);
-										Set<Xref> someTarXrefs = aMapper.mapID(target, usedDataSourceArray);
-										crfsTar.addAll(someTarXrefs);
-									}
-
-									boolean regulatorAlreadyInKeys = false;
-									boolean targetAlreadyInKeys = false;
-									boolean interactionAlreadyExists = false;
-									Xref regulatorInKeys = null;
-									Xref targetInKeys = null;
-									for (Xref xrefReg : crfsReg) {
-										if (interactions.containsKey(xrefReg)) {
-											regulatorAlreadyInKeys = true;
-											regulatorInKeys = xrefReg;
-											for (Interaction anInteraction : interactions.get(xrefReg)) {
-												if (crfsTar.contains(anInteraction.getTarget())) {
-													interactionAlreadyExists = true;
-													if (anInteraction.getPMID().equals("")) {
-														anInteraction.setPMID(thisInteraction.getPMID());
-													}
-													anInteraction.addFile(importInformation.getTxtFile());
-												}
-											}
-										}
-									}
-									for (Xref xrefTar : crfsTar) {
-										if (interactions.containsKey(xrefTar)) {
-											targetAlreadyInKeys = true;
-											targetInKeys = xrefTar;
-											for (Interaction anInteraction : interactions.get(xrefTar)) {
-												if (crfsReg.contains(anInteraction.getRegulator())) {
-													interactionAlreadyExists = true;
-													if (anInteraction.getPMID().equals("")) {
-														anInteraction.setPMID(thisInteraction.getPMID());
-													}
-													anInteraction.addFile(importInformation.getTxtFile());
-												}
-											}
-										}
-									}
-
-									if (!interactionAlreadyExists) {
-										if (regulatorAlreadyInKeys) {
-											if (!targetAlreadyInKeys) {
-												thisInteraction = new Interaction(regulatorInKeys, target,
-														importInformation.getTxtFile());
-												interactions.get(regulatorInKeys).add(thisInteraction);
-												List<Interaction> intList = new ArrayList<Interaction>();
-												intList.add(thisInteraction);
-												interactions.put(target, intList);
-											} else {
-												thisInteraction = new Interaction(regulatorInKeys, targetInKeys,
-														importInformation.getTxtFile());
-												interactions.get(regulatorInKeys).add(thisInteraction);
-												interactions.get(targetInKeys).add(thisInteraction);
-											}
-										} else {
-											if (!targetAlreadyInKeys) {
-												List<Interaction> intListReg = new ArrayList<Interaction>();
-												intListReg.add(thisInteraction);
-												interactions.put(regulator, intListReg);
-												List<Interaction> intListTar = new ArrayList<Interaction>();
-												intListTar.add(thisInteraction);
-												interactions.put(target, intListTar);
-											} else {
-												thisInteraction = new Interaction(regulator, targetInKeys,
-														importInformation.getTxtFile());
-												List<Interaction> intList = new ArrayList<Interaction>();
-												intList.add(thisInteraction);
-												interactions.put(regulator, intList);
-												interactions.get(targetInKeys).add(thisInteraction);
-											}
-										}
-									}
-								}
-							}
-							progress++;
-							if (progress % PROGRESS_INTERVAL == 0) {
-								progressSent.setValue(progress);
-								pk.setProgress(progress);
-							}
-						}
-						in.close();
-						plugin.getIntFiles().add(importInformation.getTxtFile());
-						progressText.append("Finished loading " + importInformation.getTxtFile().getName() + "\n");
+					try {
+						imb.addFiles(plugin.getImportInformationList());
+					} finally {
+						imb.shutdown();
 					}
-					progressText.append("Added " + progress + " entries in " + stopwatch.stop() + "ms\n");
+					progress = imb.getProgress();
+					progressText.append("Processed " + progress + " kB in " + stopwatch.stop() + "ms\n");
+				} catch (InterruptedIOException e) {
+					// cancelled, reported by the InteractionMapBuilder
 				} catch (FileNotFoundException e) {
 					e.printStackTrace();
 				} catch (IOException e) {
@@ -353,17 +180,13 @@ public class ImportPage extends WizardPanelDescriptor implements ProgressListene
 
 			@Override
 			public void done() {
+				progressTimer.stop();
 				progressSent.setValue(pk.getTotalWork());
 				pk.finished();
 				pk.setTaskName("Finished");
 				getWizard().setNextFinishButtonEnabled(true);
 				getWizard().setBackButtonEnabled(true);
-
-				LinkedHashSet<File> files = new LinkedHashSet<File>();
-				for (ImportInformation impInfo : plugin.getImportInformationList()) {
-					files.add(impInfo.getTxtFile());
-				}
-				RegIntPreferences.getPreferences().setSelectedIntFiles(files);
+				plugin.importFinished();
 			}
 		};
 		sw.execute();
@@ -34,8 +34,10 @@ import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
 
 import org.pathvisio.desktop.PvDesktop;
 import org.pathvisio.regint.RegIntPlugin;
@@ -53,12 +55,14 @@ import com.jgoodies.forms.layout.FormLayout;
  * @author mku
  */
 public class PreferenceDialog extends JDialog {
+	private static final int MAX_MAPPING_BATCH_SIZE = 100000;
 	private String[] sortOptions = { "Alphabetically", "By number of occurrences in interaction files" };
 	private JButton saveButton = new JButton("Save");
 	private JButton cancelButton = new JButton("Cancel");
 	private JDialog dialog;
 	private JPanel mainPanel;
 	private JComboBox sortBox;
+	private JSpinner batchSizeSpinner;
 	private JList jList;
 	private RegIntPlugin plugin;
 	private PvDesktop desktop;
@@ -79,13 +83,18 @@ public class PreferenceDialog extends JDialog {
 		saveButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				RegIntPreferences.getPreferences().setSort(sortBox.getSelectedIndex());
-				if( jList != null && jList.isSelectionEmpty()) {
+				RegIntPreferences.getPreferences().setMappingBatchSize(
+						((Number) batchSizeSpinner.getValue()).intValue());
+				if( jList != null && !jList.isSelectionEmpty()) {
 					RegIntPreferences.getPreferences().setSelectedIntFileIndices(jList.getSelectedIndices());
 					LinkedHashSet<File> setIntFiles = new LinkedHashSet<File>();
 					for (int i : jList.getSelectedIndices()) {
 						setIntFiles.add(plugin.getIntFiles().get(i));
 					}
-					RegIntPreferences.getPreferences().setSelectedIntFiles(setIntFiles);
+					if (!setIntFiles.equals(RegIntPreferences.getPreferences().getSelectedIntFiles())) {
+						RegIntPreferences.getPreferences().setSelectedIntFiles(setIntFiles);
+						plugin.interactionsChanged();
+					}
 				}
 				dialog.setVisible(false);
 			}
@@ -103,13 +112,16 @@ public class PreferenceDialog extends JDialog {
 		buttonPanel.add(saveButton);
 		buttonPanel.add(cancelButton);
 
-		FormLayout layout = new FormLayout("5dlu, pref, 3dlu, pref, 5dlu", "5dlu, pref, 5dlu, pref, 5dlu");
+		FormLayout layout = new FormLayout("5dlu, pref, 3dlu, pref, 5dlu",
+				"5dlu, pref, 5dlu, pref, 5dlu, pref, 5dlu");
 		PanelBuilder builder = new PanelBuilder(layout);
 		builder.setDefaultDialogBorder();
 		CellConstraints cc = new CellConstraints();
 		sortBox = new JComboBox(sortOptions);
 
 		sortBox.setSelectedIndex(RegIntPreferences.getPreferences().getSort());
+		batchSizeSpinner = new JSpinner(new SpinnerNumberModel(RegIntPreferences.getPreferences()
+				.getMappingBatchSize(), 1, MAX_MAPPING_BATCH_SIZE, 100));
 
 		if (plugin.getIntFiles() != null && !plugin.getIntFiles().isEmpty()) {
 			ArrayList<File> intFiles = plugin.getIntFiles();
@@ -141,6 +153,8 @@ public class PreferenceDialog extends JDialog {
 		builder.addLabel("Sorting method", cc.xy(2, 2));
 		builder.addLabel("Select interaction files to use", cc.xy(2, 4));
 		builder.add(sortBox, cc.xy(4, 2));
+		builder.addLabel("Identifiers mapped per gene database query", cc.xy(2, 6));
+		builder.add(batchSizeSpinner, cc.xy(4, 6));
 
 		mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 		mainPanel.add(builder.getPanel(), BorderLayout.CENTER);
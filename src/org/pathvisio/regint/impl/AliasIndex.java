@@ -0,0 +1,114 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.Xref;
+
+/**
+ * Secondary index from every identifier that maps to a node of the
+ * interaction map (including the node itself) to that node. It is filled
+ * during import, when all identifiers are mapped anyway, so looking up the
+ * interactions of a selected data node does not need the gene database.
+ * <p>
+ * The index is only valid for the gene database it was built with. The
+ * plugin compares the gene database generation of the
+ * {@link InteractionIndex} with its own, and a stale index is rebuilt by the
+ * next import.
+ * <p>
+ * A copy shares the aliases of the original and only stores the aliases
+ * registered since, so an import does not copy all aliases for every batch.
+ * The shared aliases are never changed; they are merged into a new shared map
+ * when the copy has a quarter as many aliases of its own.
+ *
+ * @author mku
+ */
+public class AliasIndex {
+
+	private static final int MERGE_RATIO = 4;
+
+	// shared with the copies, not changed
+	private final Map<Xref, Set<Xref>> shared;
+	// registered since the copy was made, an entry replaces the shared one
+	private final Map<Xref, Set<Xref>> nodes;
+	private int size;
+
+	public AliasIndex() {
+		shared = Collections.emptyMap();
+		nodes = new HashMap<Xref, Set<Xref>>();
+		size = 0;
+	}
+
+	/**
+	 * Creates a copy of the given index, changes to the copy do not affect
+	 * the original.
+	 */
+	public AliasIndex(AliasIndex other) {
+		// the sets are replaced, not changed, by register
+		if (other.nodes.size() * MERGE_RATIO < other.shared.size()) {
+			shared = other.shared;
+			nodes = new HashMap<Xref, Set<Xref>>(other.nodes);
+		} else {
+			Map<Xref, Set<Xref>> merged = new HashMap<Xref, Set<Xref>>(other.shared);
+			merged.putAll(other.nodes);
+			shared = merged;
+			nodes = new HashMap<Xref, Set<Xref>>();
+		}
+		size = other.size;
+	}
+
+	/**
+	 * Registers all aliases of a node of the interaction map.
+	 */
+	public void register(Xref node, Collection<Xref> aliases) {
+		for (Xref alias : aliases) {
+			Set<Xref> current = getNodes(alias);
+			if (current.isEmpty()) {
+				// most identifiers belong to one node only
+				nodes.put(alias, Collections.singleton(node));
+				size++;
+			} else if (!current.contains(node)) {
+				Set<Xref> more = new HashSet<Xref>(current);
+				more.add(node);
+				nodes.put(alias, more);
+			}
+		}
+	}
+
+	/**
+	 * @return the nodes of the interaction map the given identifier maps to,
+	 *         or an empty set if there are none
+	 */
+	public Set<Xref> getNodes(Xref alias) {
+		Set<Xref> result = nodes.get(alias);
+		if (result == null) {
+			result = shared.get(alias);
+		}
+		return result == null ? Collections.<Xref> emptySet() : result;
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,158 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.AttributeMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.pathvisio.core.data.GdbManager;
+import org.pathvisio.core.data.GdbManager.GdbEvent;
+import org.pathvisio.core.data.GdbManager.GdbEventListener;
+import org.pathvisio.core.util.Utils;
+
+/**
+ * Plugin-wide cache of the attributes (symbol, description, ...) of
+ * interaction partners in the current gene database. The attributes of all
+ * partners of a query are fetched at once by {@link #fetchAll(Collection)}
+ * in the background, so the partner list can use the symbols as labels and
+ * the backpage does not have to query the database. The least recently used
+ * entries are evicted when the cache is full, and the cache is cleared when a
+ * gene database is added to or removed from the {@link GdbManager}.
+ *
+ * @author mku
+ */
+public class AttributeCache implements GdbEventListener {
+
+	public static final int DEFAULT_MAX_SIZE = 50000;
+
+	private final GdbManager gdbManager;
+	private final Map<Xref, Map<String, Set<String>>> cache;
+	// increased on every invalidation, so attributes fetched from a gene
+	// database that was replaced are not stored
+	private long generation;
+
+	public AttributeCache(GdbManager gdbManager) {
+		this(gdbManager, DEFAULT_MAX_SIZE);
+	}
+
+	public AttributeCache(GdbManager gdbManager, final int maxSize) {
+		this.gdbManager = gdbManager;
+		cache = new LinkedHashMap<Xref, Map<String, Set<String>>>(1024, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Xref, Map<String, Set<String>>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Fetches the attributes of all given Xrefs that are not cached yet.
+	 */
+	public void fetchAll(Collection<Xref> xrefs) throws IDMapperException {
+		Set<Xref> missing = new LinkedHashSet<Xref>();
+		long startGeneration;
+		synchronized (this) {
+			startGeneration = generation;
+			for (Xref xref : xrefs) {
+				if (xref.getDataSource() != null && !cache.containsKey(xref)) {
+					missing.add(xref);
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		// the database is queried outside the lock, so labels can be read
+		// while the attributes are fetched
+		AttributeMapper mapper = gdbManager.getCurrentGdb();
+		Map<Xref, Map<String, Set<String>>> fetched = new HashMap<Xref, Map<String, Set<String>>>();
+		for (Xref xref : missing) {
+			fetched.put(xref, mapper.getAttributes(xref));
+		}
+		synchronized (this) {
+			if (generation == startGeneration) {
+				cache.putAll(fetched);
+			}
+		}
+	}
+
+	/**
+	 * @return the attributes of the Xref, fetched from the gene database if
+	 *         they are not cached. The map must not be modified.
+	 */
+	public Map<String, Set<String>> getAttributes(Xref xref) throws IDMapperException {
+		if (xref.getDataSource() == null) {
+			return Collections.emptyMap();
+		}
+		fetchAll(Collections.singleton(xref));
+		synchronized (this) {
+			Map<String, Set<String>> attributes = cache.get(xref);
+			if (attributes != null) {
+				return attributes;
+			}
+		}
+		// the gene database changed while fetching
+		return gdbManager.getCurrentGdb().getAttributes(xref);
+	}
+
+	/**
+	 * @return the symbol of the Xref if its attributes are cached, otherwise
+	 *         null. Does not query the database.
+	 */
+	public synchronized String getSymbol(Xref xref) {
+		Map<String, Set<String>> attributes = cache.get(xref);
+		if (attributes == null) {
+			return null;
+		}
+		return Utils.oneOf(attributes.get("Symbol"));
+	}
+
+	/**
+	 * @return the symbol of the Xref if it is cached, otherwise the Xref
+	 */
+	public String getLabel(Xref xref) {
+		String symbol = getSymbol(xref);
+		return symbol != null ? symbol : xref.toString();
+	}
+
+	/**
+	 * Removes all cached attributes.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		generation++;
+	}
+
+	@Override
+	public void gdbEvent(GdbEvent e) {
+		clear();
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+}
@@ -0,0 +1,77 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * Maps many {@link Xref}s at once with the bulk
+ * {@link IDMapper#mapID(Collection, DataSource...)} call, instead of one
+ * query per Xref. Each distinct Xref is mapped only once.
+ *
+ * @author mku
+ */
+public class BatchMapper {
+
+	/**
+	 * Maps all given Xrefs with every mapper, in batches of at most batchSize
+	 * Xrefs per query.
+	 *
+	 * @param targets
+	 *            the data sources to map to, all data sources if empty
+	 * @return for each of the given Xrefs the set of mapped Xrefs, always
+	 *         including the Xref itself
+	 */
+	public static Map<Xref, Set<Xref>> mapAll(List<IDMapper> mappers, Collection<Xref> xrefs, DataSource[] targets,
+			int batchSize) throws IDMapperException {
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		for (Xref xref : xrefs) {
+			if (!result.containsKey(xref)) {
+				Set<Xref> equivalents = new HashSet<Xref>();
+				equivalents.add(xref);
+				result.put(xref, equivalents);
+			}
+		}
+
+		List<Xref> distinct = new ArrayList<Xref>(result.keySet());
+		for (int start = 0; start < distinct.size(); start += batchSize) {
+			List<Xref> batch = distinct.subList(start, Math.min(start + batchSize, distinct.size()));
+			for (IDMapper mapper : mappers) {
+				Map<Xref, Set<Xref>> mapped = mapper.mapID(batch, targets);
+				for (Map.Entry<Xref, Set<Xref>> entry : mapped.entrySet()) {
+					Set<Xref> equivalents = result.get(entry.getKey());
+					if (equivalents != null && entry.getValue() != null) {
+						equivalents.addAll(entry.getValue());
+					}
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,134 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.regint.impl.util.FileChunk;
+import org.pathvisio.regint.impl.util.ImportPlan;
+import org.pathvisio.regint.impl.util.RowTokenizer;
+
+/**
+ * Parses the rows of one chunk of an interaction file into
+ * {@link InteractionRow}s, in file order. Parsing does not touch the shared
+ * interaction map, so chunks can be parsed concurrently; the
+ * {@link InteractionMapBuilder} merges the results in chunk order.
+ *
+ * @author mku
+ */
+public class ChunkParser implements Callable<List<InteractionRow>> {
+
+	private final ImportPlan plan;
+	private final FileChannel channel;
+	private final FileChunk chunk;
+	// the bytes of a chunk read from a stream, null if the chunk is read from
+	// the channel
+	private final ByteBuffer bytes;
+	private final Charset charset;
+	// CRC-32 of a chunk read from the channel, set by call()
+	private long checksum;
+
+	public ChunkParser(ImportPlan plan, FileChannel channel, FileChunk chunk, Charset charset) {
+		this.plan = plan;
+		this.channel = channel;
+		this.chunk = chunk;
+		this.bytes = null;
+		this.charset = charset;
+	}
+
+	/**
+	 * Parses a chunk read with
+	 * {@link FileChunk#read(java.io.PushbackInputStream, int)}.
+	 */
+	public ChunkParser(ImportPlan plan, ByteBuffer bytes, Charset charset) {
+		this.plan = plan;
+		this.channel = null;
+		this.chunk = null;
+		this.bytes = bytes;
+		this.charset = charset;
+	}
+
+	@Override
+	public List<InteractionRow> call() throws Exception {
+		ByteBuffer data = bytes;
+		if (data == null) {
+			data = chunk.read(channel);
+			checksum = FileChunk.checksum(data);
+		}
+		CharBuffer text = FileChunk.decode(data, charset);
+		RowTokenizer tokenizer = plan.createTokenizer();
+		StringBuilder miscBuffer = new StringBuilder();
+		List<InteractionRow> rows = new ArrayList<InteractionRow>();
+
+		int length = text.length();
+		int lineStart = 0;
+		while (lineStart < length) {
+			// lines end with "\n", "\r\n" or a lone "\r" (old Mac files)
+			int lineEnd = lineStart;
+			while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd < length - 1 && text.charAt(lineEnd) == '\r' && text.charAt(lineEnd + 1) == '\n') {
+				next++;
+			}
+			tokenizer.reset(text, lineStart, lineEnd);
+			InteractionRow row = parseRow(tokenizer, miscBuffer);
+			if (row != null) {
+				rows.add(row);
+			}
+			lineStart = next;
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the CRC-32 of the bytes of a chunk that was read from the
+	 *         channel, available when {@link #call()} returned
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	private InteractionRow parseRow(RowTokenizer tokenizer, StringBuilder miscBuffer) {
+		if (!plan.isComplete(tokenizer)) {
+			return null;
+		}
+		String regulatorString = plan.getRegulatorId(tokenizer);
+		String targetString = plan.getTargetId(tokenizer);
+		if (regulatorString.equals("") || targetString.equals("")) {
+			return null;
+		}
+		DataSource dsReg = plan.getRegulatorDataSource(tokenizer);
+		DataSource dsTar = plan.getTargetDataSource(tokenizer);
+		InteractionRow row = new InteractionRow(new Xref(regulatorString, dsReg), new Xref(targetString, dsTar));
+		if (plan.hasPMID()) {
+			row.setPMID(plan.getPMID(tokenizer));
+		}
+		row.setMiscValues(plan.getMiscValues(tokenizer, miscBuffer));
+		return row;
+	}
+}
@@ -0,0 +1,97 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.BitSet;
+
+/**
+ * A set of imported files as a bit mask of their ids in the
+ * {@link InteractionIndex}, created with
+ * {@link InteractionIndex#getFileSelection(java.util.Collection)}. The first
+ * 64 files are bits of a long, so with up to 64 imported files testing
+ * whether an interaction is in a selected file is a single AND, and counting
+ * its selected files a single popcount.
+ *
+ * @author mku
+ */
+public class FileSelection {
+
+	static final int MASK_BITS = 64;
+
+	private final long mask;
+	// ids of the selected files from 64 on, null if there are none
+	private final BitSet overflow;
+	private final int size;
+	private final boolean allFiles;
+
+	/**
+	 * @param fileCount
+	 *            the number of imported files
+	 */
+	FileSelection(long mask, BitSet overflow, int fileCount) {
+		this.mask = mask;
+		this.overflow = overflow;
+		this.size = Long.bitCount(mask) + (overflow == null ? 0 : overflow.cardinality());
+		allFiles = size == fileCount;
+	}
+
+	/**
+	 * @return true if any of the given files is selected
+	 */
+	boolean intersects(long fileMask, BitSet fileOverflow) {
+		return (mask & fileMask) != 0 || (overflow != null && fileOverflow != null && overflow.intersects(fileOverflow));
+	}
+
+	/**
+	 * @return the number of the given files that are selected
+	 */
+	int count(long fileMask, BitSet fileOverflow) {
+		int count = Long.bitCount(mask & fileMask);
+		if (overflow != null && fileOverflow != null) {
+			BitSet selected = (BitSet) fileOverflow.clone();
+			selected.and(overflow);
+			count += selected.cardinality();
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the file with the given id is selected
+	 */
+	boolean contains(int file) {
+		if (file < MASK_BITS) {
+			return (mask & (1L << file)) != 0;
+		}
+		return overflow != null && overflow.get(file - MASK_BITS);
+	}
+
+	/**
+	 * @return true if all imported files are selected, then the number of
+	 *         files of an interaction is its number of selected files
+	 */
+	public boolean isAllFiles() {
+		return allFiles;
+	}
+
+	/**
+	 * @return the number of selected files that were imported
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,343 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.core.preferences.GlobalPreference;
+import org.pathvisio.regint.impl.util.ImportPlan;
+
+/**
+ * Binary snapshot of an imported interaction file: the parsed rows of the
+ * {@link PartialIndex} and the mapped identifiers of its regulators and
+ * targets, stored in the PathVisio application directory. When the same file
+ * is imported again with the same settings, the snapshot is read instead of
+ * parsing the file, and if the gene database is the same too, instead of
+ * mapping the identifiers.
+ * <p>
+ * A snapshot is only used if the size, modification time and a hash of the
+ * whole file are unchanged. Hashing reads the file once, which is much faster
+ * than parsing it and mapping its identifiers. The snapshot is read
+ * completely before the partial index is returned, like a parsed file.
+ * <p>
+ * The size, modification time and hash that are stored are those of the
+ * bytes that were parsed, see {@link PartialIndex#setFileState}; a partial
+ * index without them is not written. Invalid snapshots are deleted when they
+ * are read, and snapshots of files that were changed or removed are deleted
+ * whenever a snapshot is written.
+ *
+ * @author mku
+ */
+public class IndexSnapshot {
+
+	private static final int MAGIC = 0x52474953;
+	private static final int VERSION = 2;
+	private static final int HASH_BUFFER_SIZE = 1 << 16;
+	private static final String NO_DATA_SOURCE = "";
+	private static final String SNAPSHOT_EXTENSION = ".snapshot";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	/**
+	 * Reads the snapshot of the file of the plan.
+	 *
+	 * @param gdbIdentity
+	 *            identifies the current gene database, the mappings are only
+	 *            read if the snapshot was made with the same database
+	 * @return the partial index of the file, or null if there is no valid
+	 *         snapshot
+	 */
+	public static PartialIndex read(ImportPlan plan, String gdbIdentity) throws IOException {
+		return read(plan, gdbIdentity, getSnapshotDir());
+	}
+
+	static PartialIndex read(ImportPlan plan, String gdbIdentity, File dir) throws IOException {
+		File snapshot = getSnapshotFile(dir, plan.getFile());
+		if (!snapshot.exists()) {
+			return null;
+		}
+		PartialIndex partial = null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot), 1 << 16));
+		try {
+			partial = read(in, plan, gdbIdentity);
+		} finally {
+			in.close();
+			if (partial == null && !snapshot.delete()) {
+				throw new IOException("Can't delete invalid snapshot " + snapshot);
+			}
+		}
+		return partial;
+	}
+
+	private static PartialIndex read(DataInputStream in, ImportPlan plan, String gdbIdentity) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			return null;
+		}
+		long length = plan.getFile().length();
+		long lastModified = plan.getFile().lastModified();
+		if (!in.readUTF().equals(plan.getFile().getAbsolutePath()) || in.readLong() != length
+				|| in.readLong() != lastModified) {
+			return null;
+		}
+		long hash = in.readLong();
+		if (hash != getContentHash(plan.getFile()) || !in.readUTF().equals(plan.getFingerprint())) {
+			return null;
+		}
+		boolean sameGdb = in.readUTF().equals(gdbIdentity);
+
+		PartialIndex partial = new PartialIndex(plan.getFile(), plan.getMiscColumnNames());
+		partial.setFileState(length, lastModified, hash);
+		int rowXrefCount = in.readInt();
+		Xref[] xrefs = new Xref[in.readInt()];
+		for (int i = 0; i < xrefs.length; i++) {
+			String code = in.readUTF();
+			DataSource dataSource = code.equals(NO_DATA_SOURCE) ? null : DataSource.getBySystemCode(code);
+			xrefs[i] = new Xref(in.readUTF(), dataSource);
+		}
+		int rows = in.readInt();
+		for (int i = 0; i < rows; i++) {
+			InteractionRow row = new InteractionRow(xrefs[in.readInt()], xrefs[in.readInt()]);
+			row.setPMID(readString(in));
+			row.setMiscValues(readString(in));
+			partial.add(row);
+		}
+		if (in.readBoolean() && sameGdb) {
+			Map<Xref, Set<Xref>> mappings = new HashMap<Xref, Set<Xref>>();
+			for (int i = 0; i < rowXrefCount; i++) {
+				Set<Xref> equivalents = new HashSet<Xref>();
+				int count = in.readInt();
+				for (int j = 0; j < count; j++) {
+					equivalents.add(xrefs[in.readInt()]);
+				}
+				mappings.put(xrefs[i], equivalents);
+			}
+			partial.setMappings(mappings);
+		}
+		return partial;
+	}
+
+	/**
+	 * Writes the snapshot of a partial index. The snapshot is written to a
+	 * temporary file first, so an interrupted write does not leave a broken
+	 * snapshot. If the partial index has no file state, or the file was
+	 * changed since it was parsed, the old snapshot is deleted instead.
+	 *
+	 * @param mapped
+	 *            the mapped identifiers of at least all regulators and
+	 *            targets of the partial index
+	 * @param gdbIdentity
+	 *            identifies the gene database the identifiers were mapped
+	 *            with
+	 */
+	public static void write(PartialIndex partial, ImportPlan plan, Map<Xref, Set<Xref>> mapped, String gdbIdentity)
+			throws IOException {
+		write(partial, plan, mapped, gdbIdentity, getSnapshotDir());
+	}
+
+	static synchronized void write(PartialIndex partial, ImportPlan plan, Map<Xref, Set<Xref>> mapped,
+			String gdbIdentity, File dir) throws IOException {
+		File snapshot = getSnapshotFile(dir, plan.getFile());
+		File file = partial.getFile();
+		if (!partial.hasFileState() || file.length() != partial.getFileLength()
+				|| file.lastModified() != partial.getFileModified()) {
+			if (snapshot.exists() && !snapshot.delete()) {
+				throw new IOException("Can't delete " + snapshot);
+			}
+			return;
+		}
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Can't create directory " + dir);
+		}
+
+		// the identifiers of the rows first, then the other mapped
+		// identifiers
+		Map<Xref, Integer> ids = new HashMap<Xref, Integer>();
+		List<Xref> xrefs = new ArrayList<Xref>();
+		for (InteractionRow row : partial.getInteractions()) {
+			addXref(row.getRegulator(), ids, xrefs);
+			addXref(row.getTarget(), ids, xrefs);
+		}
+		int rowXrefCount = xrefs.size();
+		for (int i = 0; i < rowXrefCount; i++) {
+			for (Xref equivalent : mapped.get(xrefs.get(i))) {
+				addXref(equivalent, ids, xrefs);
+			}
+		}
+
+		File temp = new File(dir, snapshot.getName() + TEMP_EXTENSION);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(plan.getFile().getAbsolutePath());
+			out.writeLong(partial.getFileLength());
+			out.writeLong(partial.getFileModified());
+			out.writeLong(partial.getFileChecksum());
+			out.writeUTF(plan.getFingerprint());
+			out.writeUTF(gdbIdentity);
+
+			out.writeInt(rowXrefCount);
+			out.writeInt(xrefs.size());
+			for (Xref xref : xrefs) {
+				DataSource dataSource = xref.getDataSource();
+				out.writeUTF(dataSource == null ? NO_DATA_SOURCE : dataSource.getSystemCode());
+				out.writeUTF(xref.getId());
+			}
+			out.writeInt(partial.size());
+			for (InteractionRow row : partial.getInteractions()) {
+				out.writeInt(ids.get(row.getRegulator()));
+				out.writeInt(ids.get(row.getTarget()));
+				writeString(out, row.getPMID());
+				writeString(out, row.getMiscValues());
+			}
+			out.writeBoolean(true);
+			for (int i = 0; i < rowXrefCount; i++) {
+				Set<Xref> equivalents = mapped.get(xrefs.get(i));
+				out.writeInt(equivalents.size());
+				for (Xref equivalent : equivalents) {
+					out.writeInt(ids.get(equivalent));
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (snapshot.exists() && !snapshot.delete()) {
+			throw new IOException("Can't replace " + snapshot);
+		}
+		if (!temp.renameTo(snapshot)) {
+			throw new IOException("Can't rename " + temp + " to " + snapshot);
+		}
+		deleteStaleSnapshots(dir);
+	}
+
+	/**
+	 * Deletes the temporary files of interrupted writes, and the snapshots of
+	 * files that were changed or removed. Only the header of a snapshot is
+	 * checked, not the hash of its file.
+	 */
+	private static void deleteStaleSnapshots(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File snapshot : files) {
+			boolean stale;
+			if (snapshot.getName().endsWith(TEMP_EXTENSION)) {
+				// writes are synchronized, so this is left from an earlier run
+				stale = true;
+			} else if (snapshot.getName().endsWith(SNAPSHOT_EXTENSION)) {
+				stale = isStale(snapshot);
+			} else {
+				stale = false;
+			}
+			if (stale && !snapshot.delete()) {
+				throw new IOException("Can't delete stale snapshot " + snapshot);
+			}
+		}
+	}
+
+	private static boolean isStale(File snapshot) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot), 1 << 12));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return true;
+			}
+			File file = new File(in.readUTF());
+			return !file.isFile() || in.readLong() != file.length() || in.readLong() != file.lastModified();
+		} catch (EOFException e) {
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void addXref(Xref xref, Map<Xref, Integer> ids, List<Xref> xrefs) {
+		if (!ids.containsKey(xref)) {
+			ids.put(xref, xrefs.size());
+			xrefs.add(xref);
+		}
+	}
+
+	/**
+	 * Writes a string of any length, {@link DataOutputStream#writeUTF} is
+	 * limited to 64 kB.
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * @return a hash of the contents of the file, to notice changes that keep
+	 *         the size and modification time
+	 */
+	private static long getContentHash(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[HASH_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * @return the file the snapshot of an interaction file is stored in
+	 */
+	public static File getSnapshotFile(File file) {
+		return getSnapshotFile(getSnapshotDir(), file);
+	}
+
+	static File getSnapshotFile(File dir, File file) {
+		String path = file.getAbsolutePath();
+		return new File(dir, file.getName() + "-" + Integer.toHexString(path.hashCode()) + SNAPSHOT_EXTENSION);
+	}
+
+	private static File getSnapshotDir() {
+		return new File(GlobalPreference.getApplicationDir(), "regint-snapshots");
+	}
+}
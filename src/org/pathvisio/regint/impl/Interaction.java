@@ -18,79 +18,83 @@
 package org.pathvisio.regint.impl;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.bridgedb.Xref;
 
 /**
  * Contains data about a biological interaction between a regulator and a
- * target.
- * 
+ * target. The data is stored in the arrays of the {@link InteractionIndex};
+ * an Interaction is only a view of one of its edges, created when the
+ * interactions of a node are requested.
+ *
  * @author Stefan van Helden
  * @author mku
  */
 public class Interaction {
 
-	private Xref regulator;
-	private Xref target;
-	private List<File> files = new ArrayList<File>();
-	private String PMID = "";
+	private final InteractionIndex index;
+	private final int edge;
 
-	// TODO: maybe read misc info as a map -> key = column header, value = data
-	private String miscInfo = "";
-
-	public Interaction(Xref regulator, Xref target, File file) {
-		this.regulator = regulator;
-		this.target = target;
-		files.add(file);
+	Interaction(InteractionIndex index, int edge) {
+		this.index = index;
+		this.edge = edge;
 	}
 
 	public Xref getRegulator() {
-		return regulator;
-	}
-
-	public void setRegulator(Xref regulator) {
-		this.regulator = regulator;
+		return index.getRegulator(edge);
 	}
 
 	public Xref getTarget() {
-		return target;
-	}
-
-	public void setTarget(Xref target) {
-		this.target = target;
+		return index.getTarget(edge);
 	}
 
+	/**
+	 * @return the files that contain the interaction, in the order they were
+	 *         imported
+	 */
 	public List<File> getFiles() {
-		return files;
+		return index.getFiles(edge, null);
 	}
 
-	public void addFile(File file) {
-		if (!files.contains(file)) {
-			this.files.add(file);
-		}
+	/**
+	 * @return the selected files that contain the interaction, in the order
+	 *         they were imported
+	 */
+	public List<File> getFiles(FileSelection selection) {
+		return index.getFiles(edge, selection);
 	}
 
-	public void removeFile(File file) {
-		if (files.contains(file)) {
-			files.remove(file);
-		}
+	/**
+	 * @return the number of selected files that contain the interaction
+	 */
+	public int countFiles(FileSelection selection) {
+		return index.countFiles(edge, selection);
 	}
 
 	public String getPMID() {
-		return PMID;
+		return index.getPMID(edge);
 	}
 
-	public void setPMID(String PMID) {
-		this.PMID = PMID;
+	/**
+	 * @return an HTML table with the misc columns of the first row of the
+	 *         interaction, or an empty string if there are none
+	 */
+	public String getMiscInfo() {
+		return index.getMiscInfo(edge);
 	}
 
-	public String getMiscInfo() {
-		return miscInfo;
+	@Override
+	public int hashCode() {
+		return edge;
 	}
 
-	public void setMiscInfo(String miscInfo) {
-		this.miscInfo = miscInfo;
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Interaction)) {
+			return false;
+		}
+		Interaction other = (Interaction) obj;
+		return index == other.index && edge == other.edge;
 	}
 }
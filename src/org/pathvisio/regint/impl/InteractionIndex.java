@@ -0,0 +1,659 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.Xref;
+import org.pathvisio.regint.impl.util.ImportPlan;
+import org.pathvisio.regint.impl.util.LongIntMap;
+
+/**
+ * The interaction map of the plugin. Every imported regulator and target is a
+ * node with an integer id. Nodes whose identifiers map to each other one to
+ * one are joined in a {@link UnionFind}, and the node imported first is the
+ * canonical node of the group. Interactions are stored between canonical nodes only, so
+ * a duplicate row is found with a single lookup of the canonical regulator and
+ * target, whatever identifiers the row uses.
+ * <p>
+ * The edges are stored in parallel int arrays instead of an object per edge:
+ * regulator, target, files, PubMed ID and the file that provided the misc
+ * columns. The files of an edge are a bit mask of file ids, with a
+ * {@link BitSet} for the ids from 64 on, so they are filtered by a
+ * {@link FileSelection} without looking up any file. PubMed IDs are shared
+ * between edges, and the HTML table of the misc columns is only built when it
+ * is shown.
+ * {@link #compact()}, called after every import, joins edges whose nodes
+ * were joined after the edges were added, and builds the outgoing and
+ * incoming adjacency of every node in compressed sparse row format.
+ * {@link Interaction}s are views of an edge, created by the queries.
+ * <p>
+ * An index is not changed after it is published by
+ * {@link #publish()}: an import adds a batch of files to a {@link #copy()}
+ * of the current index, and the plugin replaces the index each time a batch
+ * is published, so the files of an import become visible one batch at a time.
+ * Queries can run on a published index from any thread while an import is
+ * running, and the Interactions they return stay valid.
+ *
+ * @author mku
+ */
+public class InteractionIndex {
+
+	private static final int NO_EDGE = -1;
+	private static final int NO_PMID = 0;
+	private static final int NO_FILE = -1;
+
+	private final Map<Xref, Integer> nodeIds;
+	private final List<Xref> nodes;
+	private final UnionFind clusters;
+	private final AliasIndex aliases;
+	// the gene database the aliases were mapped with
+	private long gdbGeneration = 0;
+
+	// imported files, and the names of their misc columns
+	private final List<File> files;
+	private final List<String[]> miscColumnNames;
+
+	// shared values of the edges
+	private final List<String> pmids;
+	private final Map<String, Integer> pmidIds;
+
+	// the edges, the same index in every array
+	private int edgeCount = 0;
+	private int[] edgeRegulator = new int[1024];
+	private int[] edgeTarget = new int[1024];
+	private long[] edgeFiles = new long[1024];
+	// number of files of the edge, kept up to date when files are added
+	private int[] edgeFileCount = new int[1024];
+	private int[] edgePMID = new int[1024];
+	// the file the misc values are from, NO_FILE if that file was imported
+	// again
+	private int[] edgeMiscFile = new int[1024];
+	// raw misc values, null if the row had none
+	private String[] edgeMisc = new String[1024];
+	// files with an id from 64 on, only for the edges that are in such a file
+	private Map<Integer, BitSet> edgeFileOverflow = new HashMap<Integer, BitSet>();
+	// (regulator, target) to edge
+	private LongIntMap edgeIds = new LongIntMap();
+
+	// adjacency in compressed sparse row format: the edges of node n are
+	// outEdges[outOffsets[n]] to outEdges[outOffsets[n + 1] - 1]
+	private int[] outOffsets = new int[1];
+	private int[] outEdges = new int[0];
+	private int[] inOffsets = new int[1];
+	private int[] inEdges = new int[0];
+
+	private volatile boolean published = false;
+
+	public InteractionIndex() {
+		nodeIds = new HashMap<Xref, Integer>();
+		nodes = new ArrayList<Xref>();
+		clusters = new UnionFind();
+		aliases = new AliasIndex();
+		files = new ArrayList<File>();
+		miscColumnNames = new ArrayList<String[]>();
+		pmids = new ArrayList<String>();
+		pmidIds = new HashMap<String, Integer>();
+		pmids.add("");
+		pmidIds.put("", NO_PMID);
+	}
+
+	private InteractionIndex(InteractionIndex other, boolean keepAliases) {
+		nodeIds = new HashMap<Xref, Integer>(other.nodeIds);
+		nodes = new ArrayList<Xref>(other.nodes);
+		clusters = new UnionFind(other.clusters);
+		aliases = keepAliases ? new AliasIndex(other.aliases) : new AliasIndex();
+		gdbGeneration = other.gdbGeneration;
+		files = new ArrayList<File>(other.files);
+		miscColumnNames = new ArrayList<String[]>(other.miscColumnNames);
+		pmids = new ArrayList<String>(other.pmids);
+		pmidIds = new HashMap<String, Integer>(other.pmidIds);
+
+		edgeCount = other.edgeCount;
+		edgeRegulator = other.edgeRegulator.clone();
+		edgeTarget = other.edgeTarget.clone();
+		edgeFiles = other.edgeFiles.clone();
+		edgeFileCount = other.edgeFileCount.clone();
+		edgePMID = other.edgePMID.clone();
+		edgeMiscFile = other.edgeMiscFile.clone();
+		edgeMisc = other.edgeMisc.clone();
+		for (Map.Entry<Integer, BitSet> entry : other.edgeFileOverflow.entrySet()) {
+			edgeFileOverflow.put(entry.getKey(), (BitSet) entry.getValue().clone());
+		}
+		edgeIds = new LongIntMap(other.edgeIds);
+
+		// replaced, not changed, by compact
+		outOffsets = other.outOffsets;
+		outEdges = other.outEdges;
+		inOffsets = other.inOffsets;
+		inEdges = other.inEdges;
+	}
+
+	/**
+	 * @return a copy of the index to add files to, changes to the copy do not
+	 *         affect this index
+	 */
+	public InteractionIndex copy() {
+		return copy(true);
+	}
+
+	/**
+	 * @param keepAliases
+	 *            false to start with an empty {@link AliasIndex}, when all
+	 *            aliases are registered again
+	 * @return a copy of the index to add files to, changes to the copy do not
+	 *         affect this index
+	 */
+	public InteractionIndex copy(boolean keepAliases) {
+		return new InteractionIndex(this, keepAliases);
+	}
+
+	/**
+	 * Marks the index as complete, after which it can no longer be changed
+	 * and can be queried from several threads. The index must be compacted.
+	 */
+	public void publish() {
+		published = true;
+	}
+
+	private void checkNotPublished() {
+		if (published) {
+			throw new IllegalStateException("A published interaction index can't be changed");
+		}
+	}
+
+	/**
+	 * Registers a file that interactions are imported from. A file that was
+	 * imported before keeps its id, but its interactions are replaced by the
+	 * ones that are added again: it is removed from all edges, and edges
+	 * without files are dropped by {@link #compact()}.
+	 *
+	 * @param miscColumnNames
+	 *            the names of the misc columns of the file
+	 * @return the id of the file, used by
+	 *         {@link #addInteraction(InteractionRow, int, Collection, Collection)}
+	 */
+	public int addFile(File file, String[] miscColumnNames) {
+		checkNotPublished();
+		int id = files.indexOf(file);
+		if (id >= 0) {
+			removeFileFromEdges(id);
+			this.miscColumnNames.set(id, miscColumnNames);
+			return id;
+		}
+		files.add(file);
+		this.miscColumnNames.add(miscColumnNames);
+		return files.size() - 1;
+	}
+
+	private void removeFileFromEdges(int file) {
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (file < FileSelection.MASK_BITS) {
+				long bit = 1L << file;
+				if ((edgeFiles[edge] & bit) != 0) {
+					edgeFiles[edge] &= ~bit;
+					edgeFileCount[edge]--;
+				}
+			} else {
+				BitSet overflow = edgeFileOverflow.get(edge);
+				if (overflow != null && overflow.get(file - FileSelection.MASK_BITS)) {
+					overflow.clear(file - FileSelection.MASK_BITS);
+					edgeFileCount[edge]--;
+				}
+			}
+			// the values are in the column layout of the old file
+			if (edgeMiscFile[edge] == file) {
+				edgeMiscFile[edge] = NO_FILE;
+				edgeMisc[edge] = null;
+			}
+		}
+	}
+
+	/**
+	 * Adds a parsed row to the interaction map, or adds its file to the
+	 * existing interaction between the same (or equivalent) regulator and
+	 * target.
+	 *
+	 * @param file
+	 *            the id of the file of the row, as returned by
+	 *            {@link #addFile(File, String[])}
+	 * @param regEquivalents
+	 *            the identifiers the regulator of the row is joined with
+	 * @param tarEquivalents
+	 *            the identifiers the target of the row is joined with
+	 */
+	public void addInteraction(InteractionRow row, int file, Collection<Xref> regEquivalents,
+			Collection<Xref> tarEquivalents) {
+		checkNotPublished();
+		int regulator = addNode(row.getRegulator(), regEquivalents);
+		int target = addNode(row.getTarget(), tarEquivalents);
+		// adding the target can join the regulator with another node
+		regulator = clusters.find(regulator);
+		long key = edgeKey(regulator, target);
+		int existing = edgeIds.get(key, NO_EDGE);
+		if (existing != NO_EDGE) {
+			addFileToEdge(existing, file);
+			if (edgePMID[existing] == NO_PMID) {
+				edgePMID[existing] = internPMID(row.getPMID());
+			}
+			if (edgeMiscFile[existing] == NO_FILE) {
+				edgeMiscFile[existing] = file;
+				edgeMisc[existing] = row.getMiscValues().equals("") ? null : row.getMiscValues();
+			}
+			return;
+		}
+
+		if (edgeCount == edgeRegulator.length) {
+			growEdges(edgeCount * 2);
+		}
+		int edge = edgeCount++;
+		edgeRegulator[edge] = regulator;
+		edgeTarget[edge] = target;
+		edgeFiles[edge] = 0;
+		edgeFileCount[edge] = 0;
+		addFileToEdge(edge, file);
+		edgePMID[edge] = internPMID(row.getPMID());
+		edgeMiscFile[edge] = file;
+		edgeMisc[edge] = row.getMiscValues().equals("") ? null : row.getMiscValues();
+		edgeIds.put(key, edge);
+	}
+
+	/**
+	 * Returns the canonical node of an identifier, creating a node if it was
+	 * not imported before, and joins it with every imported node among its
+	 * equivalent identifiers.
+	 */
+	private int addNode(Xref xref, Collection<Xref> equivalents) {
+		Integer id = nodeIds.get(xref);
+		int root;
+		if (id == null) {
+			root = clusters.add();
+			nodeIds.put(xref, root);
+			nodes.add(xref);
+		} else {
+			root = clusters.find(id);
+		}
+		for (Xref equivalent : equivalents) {
+			Integer other = nodeIds.get(equivalent);
+			if (other != null) {
+				root = clusters.union(root, other);
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Moves the edges of nodes that were joined with another node to the
+	 * canonical node of the group, joining edges that become duplicates, and
+	 * rebuilds the adjacency of all nodes. Call after adding the interactions
+	 * of an import.
+	 */
+	public void compact() {
+		checkNotPublished();
+		clusters.flatten();
+		LongIntMap compacted = new LongIntMap(edgeCount);
+		Map<Integer, BitSet> compactedOverflow = new HashMap<Integer, BitSet>();
+		int kept = 0;
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFileCount[edge] == 0) {
+				// its only files were imported again without it
+				continue;
+			}
+			int regulator = clusters.find(edgeRegulator[edge]);
+			int target = clusters.find(edgeTarget[edge]);
+			long key = edgeKey(regulator, target);
+			int existing = compacted.get(key, NO_EDGE);
+			if (existing == NO_EDGE) {
+				// edges only move to a lower index, so they are not
+				// overwritten before they are read
+				edgeRegulator[kept] = regulator;
+				edgeTarget[kept] = target;
+				edgeFiles[kept] = edgeFiles[edge];
+				edgeFileCount[kept] = edgeFileCount[edge];
+				BitSet overflow = edgeFileOverflow.get(edge);
+				if (overflow != null) {
+					compactedOverflow.put(kept, overflow);
+				}
+				edgePMID[kept] = edgePMID[edge];
+				edgeMiscFile[kept] = edgeMiscFile[edge];
+				edgeMisc[kept] = edgeMisc[edge];
+				compacted.put(key, kept);
+				kept++;
+			} else {
+				edgeFiles[existing] |= edgeFiles[edge];
+				BitSet overflow = edgeFileOverflow.get(edge);
+				if (overflow != null) {
+					BitSet existingOverflow = compactedOverflow.get(existing);
+					if (existingOverflow == null) {
+						compactedOverflow.put(existing, overflow);
+					} else {
+						existingOverflow.or(overflow);
+					}
+				}
+				BitSet merged = compactedOverflow.get(existing);
+				edgeFileCount[existing] = Long.bitCount(edgeFiles[existing])
+						+ (merged == null ? 0 : merged.cardinality());
+				if (edgePMID[existing] == NO_PMID) {
+					edgePMID[existing] = edgePMID[edge];
+				}
+				if (edgeMiscFile[existing] == NO_FILE) {
+					edgeMiscFile[existing] = edgeMiscFile[edge];
+					edgeMisc[existing] = edgeMisc[edge];
+				}
+			}
+		}
+		Arrays.fill(edgeMisc, kept, edgeCount, null);
+		edgeCount = kept;
+		edgeIds = compacted;
+		edgeFileOverflow = compactedOverflow;
+
+		outOffsets = buildOffsets(edgeRegulator);
+		outEdges = buildAdjacency(edgeRegulator, outOffsets);
+		inOffsets = buildOffsets(edgeTarget);
+		inEdges = buildAdjacency(edgeTarget, inOffsets);
+	}
+
+	private int[] buildOffsets(int[] endpoints) {
+		int[] offsets = new int[nodes.size() + 1];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			offsets[endpoints[edge] + 1]++;
+		}
+		for (int node = 0; node < nodes.size(); node++) {
+			offsets[node + 1] += offsets[node];
+		}
+		return offsets;
+	}
+
+	private int[] buildAdjacency(int[] endpoints, int[] offsets) {
+		int[] next = Arrays.copyOf(offsets, nodes.size());
+		int[] adjacency = new int[edgeCount];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			adjacency[next[endpoints[edge]]++] = edge;
+		}
+		return adjacency;
+	}
+
+	private void growEdges(int capacity) {
+		edgeRegulator = Arrays.copyOf(edgeRegulator, capacity);
+		edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+		edgeFiles = Arrays.copyOf(edgeFiles, capacity);
+		edgeFileCount = Arrays.copyOf(edgeFileCount, capacity);
+		edgePMID = Arrays.copyOf(edgePMID, capacity);
+		edgeMiscFile = Arrays.copyOf(edgeMiscFile, capacity);
+		edgeMisc = Arrays.copyOf(edgeMisc, capacity);
+	}
+
+	private static long edgeKey(int regulator, int target) {
+		return ((long) regulator << 32) | target;
+	}
+
+	private void addFileToEdge(int edge, int file) {
+		if (file < FileSelection.MASK_BITS) {
+			long bit = 1L << file;
+			if ((edgeFiles[edge] & bit) == 0) {
+				edgeFiles[edge] |= bit;
+				edgeFileCount[edge]++;
+			}
+			return;
+		}
+		BitSet overflow = edgeFileOverflow.get(edge);
+		if (overflow == null) {
+			overflow = new BitSet();
+			edgeFileOverflow.put(edge, overflow);
+		}
+		if (!overflow.get(file - FileSelection.MASK_BITS)) {
+			overflow.set(file - FileSelection.MASK_BITS);
+			edgeFileCount[edge]++;
+		}
+	}
+
+	private int internPMID(String pmid) {
+		Integer id = pmidIds.get(pmid);
+		if (id == null) {
+			id = pmids.size();
+			pmids.add(pmid);
+			pmidIds.put(pmid, id);
+		}
+		return id;
+	}
+
+	// QUERIES
+
+	/**
+	 * @return the ids of the given files as a mask, ignoring files that were
+	 *         not imported
+	 */
+	public FileSelection getFileSelection(Collection<File> selectedFiles) {
+		long mask = 0;
+		BitSet overflow = null;
+		for (int file = 0; file < files.size(); file++) {
+			if (!selectedFiles.contains(files.get(file))) {
+				continue;
+			}
+			if (file < FileSelection.MASK_BITS) {
+				mask |= 1L << file;
+			} else {
+				if (overflow == null) {
+					overflow = new BitSet();
+				}
+				overflow.set(file - FileSelection.MASK_BITS);
+			}
+		}
+		return new FileSelection(mask, overflow, files.size());
+	}
+
+	/**
+	 * @return the interactions in which the node is the regulator and that
+	 *         are in at least one of the selected files. The node does not
+	 *         have to be canonical.
+	 */
+	public List<Interaction> getTargets(Xref xref, FileSelection selection) {
+		return getInteractions(xref, outOffsets, outEdges, selection, false);
+	}
+
+	/**
+	 * @return the interactions in which the node is the target and that are
+	 *         in at least one of the selected files, except interactions of
+	 *         the node with itself, which are returned by
+	 *         {@link #getTargets(Xref, FileSelection)}. The node does not have
+	 *         to be canonical.
+	 */
+	public List<Interaction> getRegulators(Xref xref, FileSelection selection) {
+		return getInteractions(xref, inOffsets, inEdges, selection, true);
+	}
+
+	private List<Interaction> getInteractions(Xref xref, int[] offsets, int[] adjacency, FileSelection selection,
+			boolean skipSelf) {
+		Integer id = nodeIds.get(xref);
+		if (id == null) {
+			return Collections.emptyList();
+		}
+		int node = clusters.getRoot(id);
+		if (node >= offsets.length - 1) {
+			// added after the last compaction
+			return Collections.emptyList();
+		}
+		List<Interaction> result = new ArrayList<Interaction>(offsets[node + 1] - offsets[node]);
+		for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+			int edge = adjacency[i];
+			if (skipSelf && edgeRegulator[edge] == edgeTarget[edge]) {
+				continue;
+			}
+			if (selection.intersects(edgeFiles[edge], edgeFileOverflow.get(edge))) {
+				result.add(new Interaction(this, edge));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the canonical node of the identifier has interactions
+	 */
+	public boolean hasInteractions(Xref xref) {
+		Integer id = nodeIds.get(xref);
+		if (id == null) {
+			return false;
+		}
+		int node = clusters.getRoot(id);
+		return node < outOffsets.length - 1
+				&& (outOffsets[node + 1] > outOffsets[node] || inOffsets[node + 1] > inOffsets[node]);
+	}
+
+	Xref getRegulator(int edge) {
+		return nodes.get(edgeRegulator[edge]);
+	}
+
+	Xref getTarget(int edge) {
+		return nodes.get(edgeTarget[edge]);
+	}
+
+	/**
+	 * @param selection
+	 *            the files to return, or null for all files
+	 */
+	List<File> getFiles(int edge, FileSelection selection) {
+		List<File> result = new ArrayList<File>();
+		for (long mask = edgeFiles[edge]; mask != 0; mask &= mask - 1) {
+			int file = Long.numberOfTrailingZeros(mask);
+			if (selection == null || selection.contains(file)) {
+				result.add(files.get(file));
+			}
+		}
+		BitSet overflow = edgeFileOverflow.get(edge);
+		if (overflow != null) {
+			for (int bit = overflow.nextSetBit(0); bit >= 0; bit = overflow.nextSetBit(bit + 1)) {
+				int file = bit + FileSelection.MASK_BITS;
+				if (selection == null || selection.contains(file)) {
+					result.add(files.get(file));
+				}
+			}
+		}
+		return result;
+	}
+
+	int countFiles(int edge, FileSelection selection) {
+		if (selection.isAllFiles()) {
+			return edgeFileCount[edge];
+		}
+		return selection.count(edgeFiles[edge], edgeFileOverflow.get(edge));
+	}
+
+	String getPMID(int edge) {
+		return pmids.get(edgePMID[edge]);
+	}
+
+	String getMiscInfo(int edge) {
+		if (edgeMisc[edge] == null) {
+			return "";
+		}
+		return ImportPlan.formatMiscInfo(miscColumnNames.get(edgeMiscFile[edge]), edgeMisc[edge]);
+	}
+
+	/**
+	 * @return the canonical node of an imported identifier, or null if the
+	 *         identifier was not imported
+	 */
+	public Xref getCanonical(Xref xref) {
+		Integer id = nodeIds.get(xref);
+		return id == null ? null : nodes.get(clusters.getRoot(id));
+	}
+
+	/**
+	 * @return the canonical nodes of the given identifiers, ignoring
+	 *         identifiers that were not imported
+	 */
+	public Set<Xref> getCanonical(Collection<Xref> xrefs) {
+		Set<Xref> result = new HashSet<Xref>();
+		for (Xref xref : xrefs) {
+			Xref canonical = getCanonical(xref);
+			if (canonical != null) {
+				result.add(canonical);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Registers the mapped identifiers of an imported identifier in the
+	 * {@link AliasIndex}. Does nothing for identifiers that were not
+	 * imported.
+	 */
+	public void registerAliases(Xref xref, Collection<Xref> equivalents) {
+		checkNotPublished();
+		if (nodeIds.containsKey(xref)) {
+			aliases.register(xref, equivalents);
+		}
+	}
+
+	/**
+	 * @return the canonical nodes the given identifier maps to, according to
+	 *         the {@link AliasIndex}
+	 */
+	public Set<Xref> findNodes(Xref alias) {
+		Set<Xref> result = new HashSet<Xref>();
+		for (Xref node : aliases.getNodes(alias)) {
+			result.add(getCanonical(node));
+		}
+		return result;
+	}
+
+	/**
+	 * @return all imported identifiers, also those that are not canonical
+	 */
+	public List<Xref> getNodes() {
+		return nodes;
+	}
+
+	public AliasIndex getAliasIndex() {
+		return aliases;
+	}
+
+	/**
+	 * @return the generation of the gene database the aliases were mapped
+	 *         with, see {@link org.pathvisio.regint.RegIntPlugin#getGdbGeneration()}
+	 */
+	public long getGdbGeneration() {
+		return gdbGeneration;
+	}
+
+	public void setGdbGeneration(long gdbGeneration) {
+		checkNotPublished();
+		this.gdbGeneration = gdbGeneration;
+	}
+
+	/**
+	 * @return the number of distinct interactions
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public boolean isEmpty() {
+		return edgeCount == 0;
+	}
+}
@@ -17,220 +17,687 @@
 
 package org.pathvisio.regint.impl;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
-import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 
 import org.bridgedb.DataSource;
-import org.bridgedb.IDMapper;
 import org.bridgedb.IDMapperException;
 import org.bridgedb.Xref;
+import org.pathvisio.core.debug.Logger;
+import org.pathvisio.core.preferences.GlobalPreference;
+import org.pathvisio.core.preferences.PreferenceManager;
 import org.pathvisio.core.util.ProgressKeeper;
 import org.pathvisio.regint.RegIntPlugin;
+import org.pathvisio.regint.dialog.ImportPage;
 import org.pathvisio.regint.dialog.LoadFileWizard;
+import org.pathvisio.regint.impl.preferences.RegIntPreferences;
+import org.pathvisio.regint.impl.util.CompressedInput;
+import org.pathvisio.regint.impl.util.FileChunk;
 import org.pathvisio.regint.impl.util.ImportInformation;
+import org.pathvisio.regint.impl.util.ImportPlan;
+import org.pathvisio.regint.impl.util.ReadAheadInputStream;
 
 /**
  * The class that does the actual work on building a map of interactions. Used
  * by the {@link ImportPage} of {@link LoadFileWizard}.
+ * <p>
+ * The files are parsed concurrently into a {@link PartialIndex} per file. A
+ * file is split into chunks at line boundaries, which are read and parsed by
+ * a pool of {@link ChunkParser}s. The parsed files are merged into a copy
+ * of the {@link InteractionIndex} one at a time, in the order the files were
+ * selected, so the resulting map does not depend on which file finishes
+ * parsing first. The distinct regulators and targets of a file are
+ * mapped in batches through the {@link XrefMappingCache} before it is
+ * merged. When the next file is not parsed yet, the copy with the files
+ * merged so far is published to the plugin, so their interactions can be
+ * queried while the other files are still loading.
+ * <p>
+ * Files that were imported before with the same settings are read from their
+ * {@link IndexSnapshot} instead. Compressed files are decompressed while they
+ * are parsed, see {@link CompressedInput}. Progress is measured in kilobytes
+ * of the files parsed, so the files are not read in advance to count their
+ * lines.
  * 
  * @author Stefan van Helden
  * @author mku
  */
 public class InteractionMapBuilder {
-	// TODO: use this class after progress bar, flickering is fixed
+	private static final long CHUNK_SIZE = 4 * 1024 * 1024;
+	// decompressed bytes read ahead of the parser for compressed files
+	private static final int DECOMPRESS_BLOCK_SIZE = 1024 * 1024;
+	private static final int DECOMPRESS_BLOCKS_AHEAD = 8;
+	private static final int BYTES_PER_PROGRESS_UNIT = 1024;
+	// number of rows merged between checks for cancellation
+	private static final int ROWS_PER_CANCEL_CHECK = 65536;
+	// milliseconds to wait for the next file before the files merged so far
+	// are published
+	private static final long MIN_PUBLISH_INTERVAL = 1000;
+
 	private RegIntPlugin plugin;
-	private int progress;
+	private AtomicLong bytesParsed = new AtomicLong();
 	private JTextArea progressText;
-	private JProgressBar progressSent;
 	private ProgressKeeper pk;
-	private final int PROGRESS_INTERVAL = 50;
+	private ExecutorService fileExecutor;
+	private ExecutorService chunkExecutor;
+	// writes the snapshots of parsed files, so the files can be queried
+	// before their snapshot is written
+	private ExecutorService snapshotExecutor;
+	private int maxChunksInFlight;
+	// the gene database used for the import, to check the mappings of
+	// snapshots
+	private String gdbIdentity;
 
-	public InteractionMapBuilder(RegIntPlugin plugin, ProgressKeeper pk, JTextArea progressText,
-			JProgressBar progressSent) {
+	/**
+	 * @param pk
+	 *            checked for cancellation. The progress is not reported to
+	 *            it, see {@link #getProgress()}
+	 */
+	public InteractionMapBuilder(RegIntPlugin plugin, ProgressKeeper pk, JTextArea progressText) {
 		this.plugin = plugin;
-		progress = 0;
 		this.pk = pk;
-		this.progressSent = progressSent;
 		this.progressText = progressText;
+		int threads = Runtime.getRuntime().availableProcessors();
+		// files and chunks use separate pools, a file task waits for its
+		// chunks and must not take a thread the chunks need
+		fileExecutor = Executors.newFixedThreadPool(threads);
+		chunkExecutor = Executors.newFixedThreadPool(threads);
+		snapshotExecutor = Executors.newSingleThreadExecutor();
+		// limits the number of parsed chunks per file waiting to be added to
+		// the partial index
+		maxChunksInFlight = 2 * threads;
+		gdbIdentity = PreferenceManager.getCurrent().get(GlobalPreference.DB_CONNECTSTRING_GDB) + "|"
+				+ PreferenceManager.getCurrent().get(GlobalPreference.DB_CONNECTSTRING_METADB);
 	}
 
-	public void addFile(ImportInformation importInformation) throws IOException, IDMapperException {
-
-		progressText.append("Loading " + importInformation.getTxtFile().getName() + "...\n");
-		Map<Xref, List<Interaction>> interactions = plugin.getInteractions();
-		int RegId = importInformation.getIdColumnReg();
-		int TarId = importInformation.getIdColumnTar();
-		FileReader fr = new FileReader(importInformation.getTxtFile());
-		BufferedReader in = new BufferedReader(fr);
-		String line = new String();
-		for (int i = 0; i < importInformation.getFirstDataRow(); i++) {
-			in.readLine();
-		}
-		while ((line = in.readLine()) != null) {
-			String[] str = line.split(importInformation.getDelimiter());
-			if (str.length >= importInformation.getSampleMaxNumCols()) {
-				String regulatorString = str[RegId];
-				String targetString = str[TarId];
-
-				if (!regulatorString.equals("") && !targetString.equals("")) {
-					Xref regulator;
-					DataSource dsReg;
-					Xref target;
-					DataSource dsTar;
-					if (importInformation.isSyscodeFixedReg()) {
-						dsReg = importInformation.getDataSourceReg();
-					} else {
-						dsReg = DataSource.getExistingBySystemCode(str[importInformation.getSyscodeColumnReg()]);
-					}
-					regulator = new Xref(regulatorString, dsReg);
-					plugin.addUsedDataSource(dsReg);
-					if (importInformation.isSyscodeFixedTar()) {
-						dsTar = importInformation.getDataSourceTar();
-					} else {
-						dsTar = DataSource.getExistingBySystemCode(str[importInformation.getSyscodeColumnTar()]);
-					}
-					target = new Xref(targetString, dsTar);
-					plugin.addUsedDataSource(dsTar);
+	/**
+	 * @return the amount of work for the {@link ProgressKeeper} to import all
+	 *         given files, in the unit used by {@link #getProgress()}
+	 */
+	public static int getTotalWork(List<ImportInformation> importInformationList) {
+		long bytes = 0;
+		for (ImportInformation impInfo : importInformationList) {
+			bytes += impInfo.getTxtFile().length();
+		}
+		return (int) (bytes / BYTES_PER_PROGRESS_UNIT) + 1;
+	}
 
-					Interaction thisInteraction = new Interaction(regulator, target, importInformation.getTxtFile());
+	/**
+	 * Parses the given files concurrently and adds them to the interaction
+	 * map of the plugin in the order they were selected, publishing the map
+	 * whenever the next file is not parsed yet. The import stops when the
+	 * {@link ProgressKeeper} is cancelled, the files that were already
+	 * published stay in the interaction map.
+	 *
+	 * @throws InterruptedIOException
+	 *             if the import was cancelled
+	 */
+	public void addFiles(List<ImportInformation> importInformationList) throws IOException, IDMapperException {
+		List<Future<PartialIndex>> parsed = new ArrayList<Future<PartialIndex>>();
+		List<ImportPlan> plans = new ArrayList<ImportPlan>();
+		try {
+			for (ImportInformation importInformation : importInformationList) {
+				final ImportPlan plan = new ImportPlan(importInformation);
+				plans.add(plan);
+				parsed.add(fileExecutor.submit(new Callable<PartialIndex>() {
+					public PartialIndex call() throws IOException {
+						PartialIndex partial = readSnapshot(plan);
+						return partial != null ? partial : parseFile(plan);
+					}
+				}));
+			}
 
-					if (importInformation.isPMIDColumnEnabled()) {
-						String PMID = str[importInformation.getPMIDColumn()];
-						thisInteraction.setPMID(PMID);
+			// merged in the order the files were selected, so the map does
+			// not depend on which file finishes parsing first
+			Batch batch = null;
+			long lastPublished = System.currentTimeMillis();
+			int next = 0;
+			try {
+				for (; next < parsed.size(); next++) {
+					Future<PartialIndex> future = parsed.get(next);
+					long wait = lastPublished + MIN_PUBLISH_INTERVAL - System.currentTimeMillis();
+					if (batch != null && !waitFor(future, wait)) {
+						// the next file takes a while, the merged files can
+						// be queried in the meantime
+						batch.publish();
+						batch = null;
+						lastPublished = System.currentTimeMillis();
 					}
-					String miscInfo = "<table border=\"1\">";
-					for (int i = 0; i < importInformation.getColNames().length; i++) {
-						if (i != importInformation.getIdColumnReg() && i != importInformation.getIdColumnTar()) {
-							if (!importInformation.isSyscodeFixedReg()
-									&& i == importInformation.getSyscodeColumnReg()) {
-								// do nothing
-							} else if (!importInformation.isSyscodeFixedTar()
-									&& i == importInformation.getSyscodeColumnTar()) {
-								// do nothing
-							} else if (importInformation.isPMIDColumnEnabled()
-									&& i == importInformation.getPMIDColumn()) {
-								// do nothing
-							} else {
-								miscInfo += "<tr><td>" + importInformation.getColNames()[i] + "</td><td>" + str[i]
-										+ "</td></tr>";
-							}
-						}
+					PartialIndex partial = getResult(future);
+					if (batch == null) {
+						batch = new Batch();
 					}
-					miscInfo += "</table>";
-					if (!miscInfo.equals("<table border=\"1\"></table>")) {
-						thisInteraction.setMiscInfo(miscInfo);
+					batch.add(partial, plans.get(next));
+				}
+				if (batch != null) {
+					batch.publish();
+				}
+			} catch (InterruptedIOException e) {
+				reportCancelled(batch, parsed.subList(next, parsed.size()));
+				throw e;
+			}
+		} finally {
+			// only has unfinished tasks after an error or cancellation
+			for (Future<PartialIndex> future : parsed) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Reports the parsed interactions that are discarded because the import
+	 * was cancelled: those of the unpublished batch and of the files that
+	 * were parsed but not merged yet.
+	 */
+	private void reportCancelled(Batch batch, List<Future<PartialIndex>> unmerged) {
+		int files = batch == null ? 0 : batch.files.size();
+		long rows = batch == null ? 0 : batch.rows;
+		for (Future<PartialIndex> future : unmerged) {
+			if (future.isDone() && !future.isCancelled()) {
+				try {
+					PartialIndex partial = future.get();
+					// the file being merged is already counted in the batch
+					if (batch == null || !batch.files.contains(partial.getFile())) {
+						rows += partial.size();
+						files++;
 					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					// not parsed
+				}
+			}
+		}
+		progressText.append("Import cancelled, discarded " + rows + " parsed interactions of " + files + " files\n");
+	}
+
+	/**
+	 * Waits at most the given time for a parse task to finish.
+	 *
+	 * @return true if the task is finished
+	 */
+	private boolean waitFor(Future<?> future, long millis) throws IOException {
+		if (millis <= 0) {
+			return future.isDone();
+		}
+		try {
+			future.get(millis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (ExecutionException e) {
+			// thrown again by getResult
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import interrupted");
+		}
+	}
+
+	/**
+	 * Parsed files that are merged into a copy of the interaction map, which
+	 * replaces the interaction map of the plugin when they are published.
+	 * The files that are parsed when the previous batch is published are
+	 * merged together, so the interaction map is copied and compacted once
+	 * per batch instead of once per file.
+	 */
+	private class Batch {
+		// queries keep using the current index until the batch is published
+		private final InteractionIndex index;
+		// the gene database generation the identifiers are mapped with
+		private final long gdbGeneration;
+		private final boolean rebuildAliases;
+		// the imported identifiers, of the index and the files of the batch
+		private final Set<Xref> imported;
+		private final Map<Xref, Set<Xref>> mapped = new HashMap<Xref, Set<Xref>>();
+		private final List<File> files = new ArrayList<File>();
+		// number of parsed interactions of the files
+		private long rows = 0;
+		// snapshots of the parsed files, written after the batch is published
+		private final List<Runnable> snapshots = new ArrayList<Runnable>();
+
+		Batch() {
+			InteractionIndex current = plugin.getInteractionIndex();
+			gdbGeneration = plugin.getGdbGeneration();
+			rebuildAliases = plugin.isAliasIndexStale(current);
+			// the edges are copied, compact changes all of them
+			index = current.copy(!rebuildAliases);
+			imported = new HashSet<Xref>(index.getNodes());
+		}
 
-					DataSource[] usedDataSourceArray = new DataSource[plugin.getUsedDataSources().size()];
-					usedDataSourceArray = plugin.getUsedDataSources().toArray(usedDataSourceArray);
-					Set<Xref> crfsReg = new HashSet<Xref>();
-					crfsReg.add(regulator);
-					Set<Xref> crfsTar = new HashSet<Xref>();
-					crfsTar.add(target);
-					for (IDMapper aMapper : plugin.getDesktop().getSwingEngine().getGdbManager().getCurrentGdb()
-							.getMappers()) {
-						Set<Xref> someRegXrefs = aMapper.mapID(regulator, usedDataSourceArray);
-						crfsReg.addAll(someRegXrefs);
-						Set<Xref> someTarXrefs = aMapper.mapID(target, usedDataSourceArray);
-						crfsTar.addAll(someTarXrefs);
+		void add(PartialIndex partial, ImportPlan plan) throws IOException, IDMapperException {
+			boolean first = files.isEmpty();
+			files.add(partial.getFile());
+			rows += partial.size();
+			// the nodes that were imported before are mapped again with the
+			// first file if the gene database changed
+			List<Xref> extraXrefs = rebuildAliases && first ? index.getNodes() : Collections
+					.<Xref> emptyList();
+			final Map<Xref, Set<Xref>> fileMapped = mapXrefs(Collections.singletonList(partial), extraXrefs);
+			if (partial.getMappings() == null) {
+				final PartialIndex snapshotPartial = partial;
+				final ImportPlan snapshotPlan = plan;
+				snapshots.add(new Runnable() {
+					public void run() {
+						writeSnapshot(snapshotPartial, snapshotPlan, fileMapped);
 					}
+				});
+			}
+			mapped.putAll(fileMapped);
 
-					boolean regulatorAlreadyInKeys = false;
-					boolean targetAlreadyInKeys = false;
-					boolean interactionAlreadyExists = false;
-					Xref regulatorInKeys = null;
-					Xref targetInKeys = null;
-					for (Xref xrefReg : crfsReg) {
-						if (interactions.containsKey(xrefReg)) {
-							regulatorAlreadyInKeys = true;
-							regulatorInKeys = xrefReg;
-							for (Interaction anInteraction : interactions.get(xrefReg)) {
-								if (crfsTar.contains(anInteraction.getTarget())) {
-									interactionAlreadyExists = true;
-									if (anInteraction.getPMID().equals("")) {
-										anInteraction.setPMID(thisInteraction.getPMID());
-									}
-									anInteraction.addFile(importInformation.getTxtFile());
-								}
-							}
-						}
+			// the identifiers of the file are joined with mapped identifiers
+			// that are imported, whose mappings are needed too
+			Set<Xref> rowXrefs = new HashSet<Xref>();
+			for (InteractionRow row : partial.getInteractions()) {
+				rowXrefs.add(row.getRegulator());
+				rowXrefs.add(row.getTarget());
+			}
+			imported.addAll(rowXrefs);
+			Set<Xref> unmapped = new HashSet<Xref>();
+			for (Xref xref : rowXrefs) {
+				for (Xref equivalent : mapped.get(xref)) {
+					if (imported.contains(equivalent) && !mapped.containsKey(equivalent)) {
+						unmapped.add(equivalent);
 					}
-					for (Xref xrefTar : crfsTar) {
-						if (interactions.containsKey(xrefTar)) {
-							targetAlreadyInKeys = true;
-							targetInKeys = xrefTar;
-							for (Interaction anInteraction : interactions.get(xrefTar)) {
-								if (crfsReg.contains(anInteraction.getRegulator())) {
-									interactionAlreadyExists = true;
-									if (anInteraction.getPMID().equals("")) {
-										anInteraction.setPMID(thisInteraction.getPMID());
-									}
-									anInteraction.addFile(importInformation.getTxtFile());
-								}
-							}
-						}
+				}
+			}
+			mapped.putAll(mapInBatches(unmapped));
+			Map<Xref, Set<Xref>> joined = new HashMap<Xref, Set<Xref>>();
+			for (Xref xref : rowXrefs) {
+				joined.put(xref, getJoinedXrefs(xref, mapped, imported));
+			}
+
+			int file = index.addFile(partial.getFile(), partial.getMiscColumnNames());
+			int merged = 0;
+			for (InteractionRow row : partial.getInteractions()) {
+				index.addInteraction(row, file, joined.get(row.getRegulator()), joined.get(row.getTarget()));
+				if (++merged % ROWS_PER_CANCEL_CHECK == 0) {
+					checkCancelled();
+				}
+			}
+		}
+
+		void publish() throws IOException {
+			index.compact();
+			for (Map.Entry<Xref, Set<Xref>> entry : mapped.entrySet()) {
+				index.registerAliases(entry.getKey(), entry.getValue());
+			}
+			// if the gene database changed while the files were added, the
+			// index is stale as soon as it is published
+			index.setGdbGeneration(gdbGeneration);
+			// the copy is discarded when the import is cancelled before this
+			// point, the published interaction map does not change
+			checkCancelled();
+			plugin.setInteractionIndex(index);
+			for (Runnable snapshot : snapshots) {
+				snapshotExecutor.execute(snapshot);
+			}
+
+			for (final File imported : files) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						plugin.fileImported(imported);
 					}
+				});
+				progressText.append("Finished loading " + imported.getName() + "\n");
+			}
+			progressText.append("Indexed " + index.getEdgeCount() + " interactions and " + index.getAliasIndex().size()
+					+ " identifiers\n");
+		}
+	}
+
+	/**
+	 * Reads the {@link IndexSnapshot} of the file of the plan, if there is a
+	 * valid one.
+	 *
+	 * @return the partial index of the file, or null if the file has to be
+	 *         parsed
+	 */
+	private PartialIndex readSnapshot(ImportPlan plan) {
+		try {
+			PartialIndex partial = IndexSnapshot.read(plan, gdbIdentity);
+			if (partial != null) {
+				addParsedBytes(plan.getFile().length());
+				progressText.append("Loaded " + plan.getFile().getName() + " from snapshot: " + partial.size()
+						+ " interactions\n");
+			}
+			return partial;
+		} catch (IOException e) {
+			// a broken snapshot is replaced after parsing the file
+			Logger.log.error("Can't read the snapshot of " + plan.getFile().getName(), e);
+			return null;
+		}
+	}
+
+	private void writeSnapshot(PartialIndex partial, ImportPlan plan, Map<Xref, Set<Xref>> mapped) {
+		try {
+			IndexSnapshot.write(partial, plan, mapped, gdbIdentity);
+		} catch (IOException e) {
+			// the import itself succeeded, only the next one is slower
+			Logger.log.error("Can't write the snapshot of " + plan.getFile().getName(), e);
+		}
+	}
+
+	/**
+	 * Parses a file into a {@link PartialIndex}, using a {@link ChunkParser}
+	 * for every chunk of the file.
+	 */
+	private PartialIndex parseFile(ImportPlan plan) throws IOException {
+		progressText.append("Loading " + plan.getFile().getName() + "...\n");
+		if (CompressedInput.isCompressed(plan.getFile())) {
+			return parseCompressedFile(plan);
+		}
+		PartialIndex partial = new PartialIndex(plan.getFile(), plan.getMiscColumnNames());
+		Charset charset = Charset.defaultCharset();
+		long length = plan.getFile().length();
+		long lastModified = plan.getFile().lastModified();
 
-					if (!interactionAlreadyExists) {
-						if (regulatorAlreadyInKeys) {
-							if (!targetAlreadyInKeys) {
-								thisInteraction = new Interaction(regulatorInKeys, target,
-										importInformation.getTxtFile());
-								interactions.get(regulatorInKeys).add(thisInteraction);
-								List<Interaction> intList = new ArrayList<Interaction>();
-								intList.add(thisInteraction);
-								interactions.put(target, intList);
-							} else {
-								thisInteraction = new Interaction(regulatorInKeys, targetInKeys,
-										importInformation.getTxtFile());
-								interactions.get(regulatorInKeys).add(thisInteraction);
-								interactions.get(targetInKeys).add(thisInteraction);
-							}
-						} else {
-							if (!targetAlreadyInKeys) {
-								List<Interaction> intListReg = new ArrayList<Interaction>();
-								intListReg.add(thisInteraction);
-								interactions.put(regulator, intListReg);
-								List<Interaction> intListTar = new ArrayList<Interaction>();
-								intListTar.add(thisInteraction);
-								interactions.put(target, intListTar);
-							} else {
-								thisInteraction = new Interaction(regulator, targetInKeys,
-										importInformation.getTxtFile());
-								List<Interaction> intList = new ArrayList<Interaction>();
-								intList.add(thisInteraction);
-								interactions.put(regulator, intList);
-								interactions.get(targetInKeys).add(thisInteraction);
-							}
-						}
+		FileInputStream in = new FileInputStream(plan.getFile());
+		LinkedList<Future<List<InteractionRow>>> pending = new LinkedList<Future<List<InteractionRow>>>();
+		LinkedList<ChunkParser> parsers = new LinkedList<ChunkParser>();
+		try {
+			FileChannel channel = in.getChannel();
+			long dataStart = FileChunk.skipLines(channel, plan.getFirstDataRow());
+			addParsedBytes(dataStart);
+			long checksum = FileChunk.checksum(new FileChunk(-1, 0, dataStart).read(channel));
+			long checksummed = dataStart;
+
+			List<FileChunk> chunks = FileChunk.split(channel, dataStart, CHUNK_SIZE);
+			int submitted = 0;
+			for (FileChunk chunk : chunks) {
+				checkCancelled();
+				while (submitted < chunks.size() && pending.size() < maxChunksInFlight) {
+					ChunkParser parser = new ChunkParser(plan, channel, chunks.get(submitted), charset);
+					parsers.add(parser);
+					pending.add(chunkExecutor.submit(parser));
+					submitted++;
+				}
+				for (InteractionRow row : getResult(pending.removeFirst())) {
+					partial.add(row);
+				}
+				checksum = FileChunk.combineChecksums(checksum, parsers.removeFirst().getChecksum(), chunk.getLength());
+				checksummed += chunk.getLength();
+				addParsedBytes(chunk.getLength());
+			}
+			setFileState(partial, length, lastModified, checksummed, checksum);
+		} finally {
+			// only has unfinished tasks after an error
+			for (Future<List<InteractionRow>> future : pending) {
+				future.cancel(true);
+			}
+			in.close();
+		}
+		progressText.append("Parsed " + plan.getFile().getName() + ": " + partial.size() + " interactions\n");
+		return partial;
+	}
+
+	/**
+	 * Records the state of the file in the partial index, if the file did
+	 * not change while it was parsed, so its snapshot matches the parsed
+	 * bytes.
+	 *
+	 * @param checksummed
+	 *            the number of bytes of the checksum
+	 */
+	private static void setFileState(PartialIndex partial, long length, long lastModified, long checksummed,
+			long checksum) {
+		File file = partial.getFile();
+		if (checksummed == length && file.length() == length && file.lastModified() == lastModified) {
+			partial.setFileState(length, lastModified, checksum);
+		}
+	}
+
+	/**
+	 * Parses a compressed file into a {@link PartialIndex}. The file is
+	 * decompressed on a separate thread, and the decompressed text is read in
+	 * chunks that are parsed by {@link ChunkParser}s, so decompressing and
+	 * parsing overlap. Progress is measured in bytes of the compressed file.
+	 */
+	private PartialIndex parseCompressedFile(ImportPlan plan) throws IOException {
+		PartialIndex partial = new PartialIndex(plan.getFile(), plan.getMiscColumnNames());
+		Charset charset = Charset.defaultCharset();
+
+		long length = plan.getFile().length();
+		long lastModified = plan.getFile().lastModified();
+
+		AtomicLong fileBytesRead = new AtomicLong();
+		// checksums the compressed bytes, every byte of the file once
+		CheckedInputStream checked = new CheckedInputStream(new FileInputStream(plan.getFile()), new CRC32());
+		InputStream decompressed = new ReadAheadInputStream(CompressedInput.open(checked, plan.getFile().getName(),
+				fileBytesRead), DECOMPRESS_BLOCK_SIZE, DECOMPRESS_BLOCKS_AHEAD, "RegInt decompress "
+				+ plan.getFile().getName());
+		// one byte is read ahead to find the end of a line ending in '\r'
+		PushbackInputStream in = new PushbackInputStream(decompressed, 1);
+		LinkedList<Future<List<InteractionRow>>> pending = new LinkedList<Future<List<InteractionRow>>>();
+		long reported = 0;
+		try {
+			FileChunk.skipLines(in, plan.getFirstDataRow());
+			boolean more = true;
+			while (more || !pending.isEmpty()) {
+				checkCancelled();
+				while (more && pending.size() < maxChunksInFlight) {
+					ByteBuffer chunk = FileChunk.read(in, (int) CHUNK_SIZE);
+					if (chunk == null) {
+						more = false;
+					} else {
+						pending.add(chunkExecutor.submit(new ChunkParser(plan, chunk, charset)));
+					}
+				}
+				if (!pending.isEmpty()) {
+					for (InteractionRow row : getResult(pending.removeFirst())) {
+						partial.add(row);
 					}
 				}
+				long read = fileBytesRead.get();
+				addParsedBytes(read - reported);
+				reported = read;
+			}
+			// the decompressor is done, the rest of the file (the end of a
+			// zip file) is only read for the checksum
+			byte[] buffer = new byte[DECOMPRESS_BLOCK_SIZE];
+			while (checked.read(buffer) >= 0) {
+				checkCancelled();
 			}
-			progress++;
-			if (progress % PROGRESS_INTERVAL == 0) {
-				progressSent.setValue(progress);
-				pk.setProgress(progress);
+			setFileState(partial, length, lastModified, length, checked.getChecksum().getValue());
+		} finally {
+			// only has unfinished tasks after an error
+			for (Future<List<InteractionRow>> future : pending) {
+				future.cancel(true);
 			}
+			in.close();
 		}
-		in.close();
-		plugin.getIntFiles().add(importInformation.getTxtFile());
-		progressText.append("Finished loading " + importInformation.getTxtFile().getName() + "\n");
+		// the end of a zip file is not counted
+		addParsedBytes(length - reported);
+		progressText.append("Parsed " + plan.getFile().getName() + ": " + partial.size() + " interactions\n");
+		return partial;
 	}
 
-	public int getProgress() {
-		return progress;
+	/**
+	 * Waits for a parse task to finish.
+	 */
+	private <T> T getResult(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
 	}
 
-	public void setProgress(int progress) {
-		this.progress = progress;
+	/**
+	 * Maps the distinct regulators and targets of the partial indexes to all
+	 * data sources, in batches. The mappings of partial indexes read from a
+	 * snapshot are used as they are.
+	 * 
+	 * @param extraXrefs
+	 *            other Xrefs to map, used to rebuild the {@link AliasIndex}
+	 * @return the mapped Xrefs for each regulator and target, including the
+	 *         Xref itself
+	 */
+	private Map<Xref, Set<Xref>> mapXrefs(List<PartialIndex> partials, List<Xref> extraXrefs)
+			throws IOException, IDMapperException {
+		Map<Xref, Set<Xref>> mapped = new HashMap<Xref, Set<Xref>>();
+		Set<Xref> xrefs = new HashSet<Xref>(extraXrefs);
+		for (PartialIndex partial : partials) {
+			for (InteractionRow row : partial.getInteractions()) {
+				plugin.addUsedDataSource(row.getRegulator().getDataSource());
+				plugin.addUsedDataSource(row.getTarget().getDataSource());
+			}
+			if (partial.getMappings() != null) {
+				mapped.putAll(partial.getMappings());
+			}
+		}
+		for (PartialIndex partial : partials) {
+			for (InteractionRow row : partial.getInteractions()) {
+				if (!mapped.containsKey(row.getRegulator())) {
+					xrefs.add(row.getRegulator());
+				}
+				if (!mapped.containsKey(row.getTarget())) {
+					xrefs.add(row.getTarget());
+				}
+			}
+		}
+		for (Xref xref : extraXrefs) {
+			plugin.addUsedDataSource(xref.getDataSource());
+		}
+
+		progressText.append("Mapping " + xrefs.size() + " identifiers...\n");
+		XrefMappingCache cache = plugin.getMappingCache();
+		long misses = cache.getMisses();
+		mapped.putAll(mapInBatches(xrefs));
+		progressText.append("Mapped " + (cache.getMisses() - misses) + " identifiers with the gene database, "
+				+ (xrefs.size() - (cache.getMisses() - misses)) + " were cached\n");
+		return mapped;
+	}
+
+	/**
+	 * Maps the Xrefs to all data sources, the results are also used for the
+	 * alias index which has to find the nodes for any identifier in a
+	 * pathway. One batch at a time, to stop mapping when the import is
+	 * cancelled.
+	 */
+	private Map<Xref, Set<Xref>> mapInBatches(Collection<Xref> xrefs) throws IOException, IDMapperException {
+		Map<Xref, Set<Xref>> mapped = new HashMap<Xref, Set<Xref>>();
+		XrefMappingCache cache = plugin.getMappingCache();
+		int batchSize = RegIntPreferences.getPreferences().getMappingBatchSize();
+		List<Xref> distinct = new ArrayList<Xref>(xrefs);
+		for (int start = 0; start < distinct.size(); start += batchSize) {
+			checkCancelled();
+			List<Xref> batch = distinct.subList(start, Math.min(start + batchSize, distinct.size()));
+			mapped.putAll(cache.mapAll(batch, new DataSource[0], batchSize));
+		}
+		return mapped;
+	}
+
+	/**
+	 * Selects the mapped identifiers an identifier is joined with in the
+	 * interaction map. A mapping to all data sources can be one-to-many, like
+	 * an Affymetrix probe that maps to several genes, and joining all mapped
+	 * identifiers would chain different genes into one node. An identifier is
+	 * therefore only joined with an imported identifier if each is the only
+	 * imported identifier of its data source that the other maps to. The
+	 * other mapped identifiers are only aliases, see {@link AliasIndex}.
+	 *
+	 * @param mapped
+	 *            the mapped identifiers of the identifier and of the
+	 *            imported identifiers it maps to
+	 * @param imported
+	 *            the identifiers that are imported, in the interaction map
+	 *            or the file that is merged
+	 */
+	static Set<Xref> getJoinedXrefs(Xref xref, Map<Xref, Set<Xref>> mapped, Set<Xref> imported) {
+		Set<Xref> joined = new HashSet<Xref>();
+		for (Xref equivalent : mapped.get(xref)) {
+			if (equivalent.equals(xref) || !imported.contains(equivalent) || !mapped.containsKey(equivalent)) {
+				continue;
+			}
+			if (countImported(mapped.get(xref), xref, equivalent.getDataSource(), imported) == 1
+					&& countImported(mapped.get(equivalent), equivalent, xref.getDataSource(), imported) == 1) {
+				joined.add(equivalent);
+			}
+		}
+		return joined;
+	}
+
+	/**
+	 * @return the number of imported identifiers of the data source among the
+	 *         mapped identifiers, not counting the identifier itself
+	 */
+	private static int countImported(Set<Xref> equivalents, Xref xref, DataSource dataSource, Set<Xref> imported) {
+		int count = 0;
+		for (Xref equivalent : equivalents) {
+			boolean sameDataSource = dataSource == null ? equivalent.getDataSource() == null : dataSource
+					.equals(equivalent.getDataSource());
+			if (sameDataSource && !equivalent.equals(xref) && imported.contains(equivalent)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Stops the import if the {@link ProgressKeeper} was cancelled.
+	 */
+	private void checkCancelled() throws InterruptedIOException {
+		if (pk.isCancelled()) {
+			throw new InterruptedIOException("Import cancelled");
+		}
+	}
+
+	/**
+	 * Stops the parser threads, call when all files are imported. The
+	 * snapshots of the imported files are still written.
+	 */
+	public void shutdown() {
+		fileExecutor.shutdownNow();
+		chunkExecutor.shutdownNow();
+		snapshotExecutor.shutdown();
+	}
+
+	private void addParsedBytes(long bytes) {
+		bytesParsed.addAndGet(bytes);
+	}
+
+	/**
+	 * @return the number of kilobytes parsed so far. Can be called from any
+	 *         thread, so the progress can be shown at a fixed rate instead of
+	 *         after every chunk.
+	 */
+	public int getProgress() {
+		return (int) (bytesParsed.get() / BYTES_PER_PROGRESS_UNIT);
 	}
 }
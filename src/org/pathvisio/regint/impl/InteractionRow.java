@@ -0,0 +1,69 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import org.bridgedb.Xref;
+import org.pathvisio.regint.impl.util.ImportPlan;
+
+/**
+ * A row of an interaction file as parsed by the {@link ChunkParser}, before it
+ * is added to the {@link InteractionIndex}.
+ *
+ * @author mku
+ */
+public class InteractionRow {
+
+	private final Xref regulator;
+	private final Xref target;
+	private String PMID = "";
+	// raw values of the misc columns, see ImportPlan#getMiscValues
+	private String miscValues = "";
+
+	public InteractionRow(Xref regulator, Xref target) {
+		this.regulator = regulator;
+		this.target = target;
+	}
+
+	public Xref getRegulator() {
+		return regulator;
+	}
+
+	public Xref getTarget() {
+		return target;
+	}
+
+	public String getPMID() {
+		return PMID;
+	}
+
+	public void setPMID(String PMID) {
+		this.PMID = PMID;
+	}
+
+	/**
+	 * @return the values of the misc columns, as joined by
+	 *         {@link ImportPlan#getMiscValues}
+	 */
+	public String getMiscValues() {
+		return miscValues;
+	}
+
+	public void setMiscValues(String miscValues) {
+		this.miscValues = miscValues;
+	}
+}
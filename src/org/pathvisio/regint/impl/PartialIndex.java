@@ -0,0 +1,153 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.Xref;
+import org.pathvisio.regint.RegIntPlugin;
+
+/**
+ * The interactions parsed from a single interaction file, before they are
+ * merged into the interaction map of the {@link RegIntPlugin}. Rows with the
+ * same regulator and target are combined while parsing, keeping the first
+ * row and the first non-empty PubMed ID, as the merge would do. The
+ * interactions keep the order of the file.
+ *
+ * @author mku
+ */
+public class PartialIndex {
+
+	private final File file;
+	private final String[] miscColumnNames;
+	private final Map<XrefPair, InteractionRow> interactions = new LinkedHashMap<XrefPair, InteractionRow>();
+	private Map<Xref, Set<Xref>> mappings;
+	// the state of the file when it was parsed, fileLength is -1 if the file
+	// changed while it was parsed
+	private long fileLength = -1;
+	private long fileModified;
+	private long fileChecksum;
+
+	public PartialIndex(File file, String[] miscColumnNames) {
+		this.file = file;
+		this.miscColumnNames = miscColumnNames;
+	}
+
+	public void add(InteractionRow row) {
+		XrefPair key = new XrefPair(row.getRegulator(), row.getTarget());
+		InteractionRow existing = interactions.get(key);
+		if (existing == null) {
+			interactions.put(key, row);
+		} else if (existing.getPMID().equals("")) {
+			existing.setPMID(row.getPMID());
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the names of the misc columns of the file
+	 */
+	public String[] getMiscColumnNames() {
+		return miscColumnNames;
+	}
+
+	public Collection<InteractionRow> getInteractions() {
+		return interactions.values();
+	}
+
+	public int size() {
+		return interactions.size();
+	}
+
+	/**
+	 * @return the mapped identifiers of the regulators and targets, if they
+	 *         were loaded from an {@link IndexSnapshot} made with the current
+	 *         gene database, otherwise null
+	 */
+	public Map<Xref, Set<Xref>> getMappings() {
+		return mappings;
+	}
+
+	public void setMappings(Map<Xref, Set<Xref>> mappings) {
+		this.mappings = mappings;
+	}
+
+	/**
+	 * Records the state of the file the interactions were parsed from, for
+	 * its {@link IndexSnapshot}.
+	 *
+	 * @param checksum
+	 *            the CRC-32 of the bytes that were parsed
+	 */
+	public void setFileState(long length, long lastModified, long checksum) {
+		fileLength = length;
+		fileModified = lastModified;
+		fileChecksum = checksum;
+	}
+
+	/**
+	 * @return true if the state of the file is known, which it is not if the
+	 *         file changed while it was parsed
+	 */
+	public boolean hasFileState() {
+		return fileLength >= 0;
+	}
+
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	public long getFileModified() {
+		return fileModified;
+	}
+
+	public long getFileChecksum() {
+		return fileChecksum;
+	}
+
+	private static class XrefPair {
+		private final Xref regulator;
+		private final Xref target;
+
+		XrefPair(Xref regulator, Xref target) {
+			this.regulator = regulator;
+			this.target = target;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * regulator.hashCode() + target.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof XrefPair)) {
+				return false;
+			}
+			XrefPair other = (XrefPair) obj;
+			return regulator.equals(other.regulator) && target.equals(other.target);
+		}
+	}
+}
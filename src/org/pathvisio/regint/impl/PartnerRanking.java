@@ -0,0 +1,127 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.bridgedb.Xref;
+
+/**
+ * The interaction partners of a node in the order they are listed, either
+ * alphabetically by their label or by the number of selected files that
+ * contain the interaction, most files first. The label of a partner is its
+ * gene symbol if it is in the {@link AttributeCache}.
+ * <p>
+ * Only the first partners are ordered when the ranking is created: they are
+ * selected with a heap of size k, in O(n log k). All partners are sorted when
+ * a partner after the first k is requested, which the partner list only does
+ * when it is scrolled that far.
+ *
+ * @author mku
+ */
+public class PartnerRanking extends AbstractList<Xref> {
+
+	private final Xref[] partners;
+	private final String[] labels;
+	// number of selected files of each partner, null if sorted alphabetically
+	private final int[] counts;
+	private final Comparator<Integer> order;
+	private final Integer[] top;
+	// all partners in order, null until a partner after the top is requested
+	private Integer[] ranked;
+
+	/**
+	 * @param interactions
+	 *            the regulator or target map of a {@link ResultsObj}
+	 * @param attributeCache
+	 *            the cache with the symbols of the partners
+	 * @param byFiles
+	 *            true to order by number of selected files, false to order
+	 *            alphabetically
+	 * @param k
+	 *            the number of partners to order immediately
+	 */
+	public PartnerRanking(Map<Xref, Interaction> interactions, FileSelection selection,
+			AttributeCache attributeCache, boolean byFiles, int k) {
+		partners = interactions.keySet().toArray(new Xref[interactions.size()]);
+		labels = new String[partners.length];
+		for (int i = 0; i < partners.length; i++) {
+			labels[i] = attributeCache.getLabel(partners[i]);
+		}
+		if (byFiles) {
+			counts = new int[partners.length];
+			for (int i = 0; i < partners.length; i++) {
+				counts[i] = interactions.get(partners[i]).countFiles(selection);
+			}
+		} else {
+			counts = null;
+		}
+		order = new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				if (counts != null && counts[a] != counts[b]) {
+					return counts[a] > counts[b] ? -1 : 1;
+				}
+				int byLabel = String.CASE_INSENSITIVE_ORDER.compare(labels[a], labels[b]);
+				return byLabel != 0 ? byLabel : partners[a].compareTo(partners[b]);
+			}
+		};
+		top = selectTop(Math.min(k, partners.length));
+	}
+
+	private Integer[] selectTop(int k) {
+		if (k == 0) {
+			return new Integer[0];
+		}
+		// the worst of the best k so far at the head
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(k + 1, Collections.reverseOrder(order));
+		for (int i = 0; i < partners.length; i++) {
+			heap.add(i);
+			if (heap.size() > k) {
+				heap.poll();
+			}
+		}
+		Integer[] result = heap.toArray(new Integer[k]);
+		Arrays.sort(result, order);
+		return result;
+	}
+
+	@Override
+	public Xref get(int index) {
+		if (index < top.length) {
+			return partners[top[index]];
+		}
+		if (ranked == null) {
+			ranked = new Integer[partners.length];
+			for (int i = 0; i < ranked.length; i++) {
+				ranked[i] = i;
+			}
+			Arrays.sort(ranked, order);
+		}
+		return partners[ranked[index]];
+	}
+
+	@Override
+	public int size() {
+		return partners.length;
+	}
+}
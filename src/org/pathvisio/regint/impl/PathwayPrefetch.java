@@ -0,0 +1,115 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.pathvisio.regint.RegIntPlugin;
+import org.pathvisio.regint.impl.preferences.RegIntPreferences;
+
+/**
+ * Looks up the interactions of all data nodes of an opened pathway in the
+ * background, so selecting a data node of the pathway does not have to wait
+ * for the query. The results are only stored in the {@link ResultsCache} of
+ * the plugin, so they are discarded with the other cached results when the
+ * interactions or the gene database change. The data nodes are split in
+ * batches that are looked up by the low priority prefetch threads of the
+ * plugin, not by the threads of the queries of the user; if the identifiers
+ * have to be mapped with the gene database, each batch is mapped with a
+ * single query first.
+ *
+ * @author mku
+ */
+public class PathwayPrefetch {
+
+	private static final int BATCH_SIZE = 100;
+
+	private final RegIntPlugin plugin;
+	private final List<Xref> xrefs;
+	private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+	private volatile boolean cancelled = false;
+
+	public PathwayPrefetch(RegIntPlugin plugin, Collection<Xref> xrefs) {
+		this.plugin = plugin;
+		this.xrefs = new ArrayList<Xref>(xrefs);
+	}
+
+	/**
+	 * Submits the lookups to the executor.
+	 */
+	public void start(ExecutorService executor) {
+		for (int start = 0; start < xrefs.size(); start += BATCH_SIZE) {
+			final List<Xref> batch = xrefs.subList(start, Math.min(start + BATCH_SIZE, xrefs.size()));
+			tasks.add(executor.submit(new Runnable() {
+				public void run() {
+					try {
+						prefetch(batch);
+					} catch (IDMapperException e) {
+						e.printStackTrace();
+					}
+				}
+			}));
+		}
+	}
+
+	private void prefetch(List<Xref> batch) throws IDMapperException {
+		if (plugin.isAliasIndexStale(plugin.getInteractionIndex())) {
+			if (!plugin.isGeneDatabaseSelected()) {
+				return;
+			}
+			// fills the mapping cache used by findInteractions
+			// one snapshot, the import can add data sources meanwhile
+			DataSource[] usedDataSourceArray = plugin.getUsedDataSources().toArray(new DataSource[0]);
+			plugin.getMappingCache().mapAll(batch, usedDataSourceArray,
+					RegIntPreferences.getPreferences().getMappingBatchSize());
+		}
+		for (Xref xref : batch) {
+			if (cancelled) {
+				return;
+			}
+			// stored in the results cache
+			plugin.findInteractions(xref);
+		}
+	}
+
+	/**
+	 * Stops looking up interactions, call when the pathway is closed.
+	 */
+	public void cancel() {
+		cancelled = true;
+		for (Future<?> task : tasks) {
+			// not interrupted, the gene database may close its connection
+			// when a query is interrupted
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * @return the identifiers of the data nodes of the pathway
+	 */
+	public List<Xref> getXrefs() {
+		return xrefs;
+	}
+}
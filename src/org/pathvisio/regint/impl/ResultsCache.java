@@ -0,0 +1,141 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bridgedb.Xref;
+import org.pathvisio.regint.RegIntPlugin;
+
+/**
+ * Cache of the {@link ResultsObj}s returned by
+ * {@link RegIntPlugin#findInteractions(Xref)}, so selecting a data node again
+ * or switching back to the RegInt tab does not repeat the query. The least
+ * recently used results are evicted when the cache is full.
+ * <p>
+ * The cache has a generation that is increased by {@link #invalidate()}, when
+ * files are imported or the selected files change. A result is only stored
+ * if it was computed in the current generation, so a query that was running
+ * during an import does not store its outdated result.
+ *
+ * @author mku
+ */
+public class ResultsCache {
+
+	public static final int DEFAULT_MAX_SIZE = 5000;
+
+	/**
+	 * Returned by {@link #get(Xref)} for identifiers that are not cached.
+	 */
+	public static final ResultsObj NOT_CACHED = new ResultsObj(null);
+
+	// stored for identifiers without interactions
+	private static final ResultsObj NO_RESULTS = new ResultsObj(null);
+
+	private final Map<Xref, ResultsObj> cache;
+	private long generation;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public ResultsCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public ResultsCache(final int maxSize) {
+		cache = new LinkedHashMap<Xref, ResultsObj>(256, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Xref, ResultsObj> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached results of the identifier, which can be null if it
+	 *         has no interactions, or {@link #NOT_CACHED}
+	 */
+	public synchronized ResultsObj get(Xref xref) {
+		ResultsObj results = cache.get(xref);
+		if (results == null) {
+			return NOT_CACHED;
+		}
+		hits++;
+		return results == NO_RESULTS ? null : results;
+	}
+
+	/**
+	 * Stores the results of an identifier, unless the cache was invalidated
+	 * after they were computed.
+	 *
+	 * @param generation
+	 *            the generation of the cache when the query started
+	 * @param results
+	 *            the results, or null if the identifier has no interactions
+	 */
+	public synchronized void put(Xref xref, ResultsObj results, long generation) {
+		misses++;
+		if (generation == this.generation) {
+			cache.put(xref, results == null ? NO_RESULTS : results);
+		}
+	}
+
+	/**
+	 * Removes all results, call when the interactions or the selected files
+	 * changed.
+	 */
+	public synchronized void invalidate() {
+		cache.clear();
+		generation++;
+	}
+
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the number of lookups that found cached results
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of results that were not cached and had to be
+	 *         computed
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of results removed because the cache was full
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+}
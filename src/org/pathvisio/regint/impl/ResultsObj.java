@@ -58,6 +58,15 @@ public class ResultsObj {
 		return targetMap;
 	}
 
+	/**
+	 * @return the interaction with a regulator or target of the selected
+	 *         Xref, or null if it is neither
+	 */
+	public Interaction getInteraction(Xref partner) {
+		Interaction interaction = regulatorMap.get(partner);
+		return interaction != null ? interaction : targetMap.get(partner);
+	}
+
 	public Xref getSelectedXref() {
 		return selectedXref;
 	}
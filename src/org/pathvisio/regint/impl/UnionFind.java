@@ -0,0 +1,118 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+/**
+ * Disjoint sets of node ids, used to group equivalent identifiers of the
+ * interaction map. The representative of a set is always its lowest id, so
+ * the node that was imported first stays the canonical node of a group.
+ *
+ * @author mku
+ */
+public class UnionFind {
+
+	private int[] parent;
+	private int size = 0;
+
+	public UnionFind() {
+		parent = new int[1024];
+	}
+
+	/**
+	 * Creates a copy of the given sets, changes to the copy do not affect
+	 * the original.
+	 */
+	public UnionFind(UnionFind other) {
+		parent = other.parent.clone();
+		size = other.size;
+	}
+
+	/**
+	 * Adds a new set with a single element.
+	 *
+	 * @return the id of the new element
+	 */
+	public int add() {
+		if (size == parent.length) {
+			int[] newParent = new int[size * 2];
+			System.arraycopy(parent, 0, newParent, 0, size);
+			parent = newParent;
+		}
+		parent[size] = size;
+		return size++;
+	}
+
+	/**
+	 * @return the representative of the set that contains id
+	 */
+	public int find(int id) {
+		while (parent[id] != id) {
+			// path halving: point every other element to its grandparent
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * @return the representative of the set that contains id, like
+	 *         {@link #find(int)} but without changing the sets, so it can be
+	 *         called by several threads at once. Fast after
+	 *         {@link #flatten()}.
+	 */
+	public int getRoot(int id) {
+		while (parent[id] != id) {
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * Points every element directly to the representative of its set.
+	 */
+	public void flatten() {
+		// the parent of an element always has a lower id, so it is
+		// flattened before the element
+		for (int id = 0; id < size; id++) {
+			parent[id] = parent[parent[id]];
+		}
+	}
+
+	/**
+	 * Joins the sets containing a and b.
+	 *
+	 * @return the representative of the joined set
+	 */
+	public int union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA == rootB) {
+			return rootA;
+		}
+		if (rootA < rootB) {
+			parent[rootB] = rootA;
+			return rootA;
+		}
+		parent[rootA] = rootB;
+		return rootB;
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,188 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.pathvisio.core.data.GdbManager;
+import org.pathvisio.core.data.GdbManager.GdbEvent;
+import org.pathvisio.core.data.GdbManager.GdbEventListener;
+
+/**
+ * Plugin-wide cache for mapping {@link Xref}s with the mappers of the current
+ * gene database. Results are stored per Xref and set of target data sources.
+ * The least recently used entries are evicted when the cache is full, and
+ * the cache is cleared when a gene database is added to or removed from the
+ * {@link GdbManager}.
+ *
+ * @author mku
+ */
+public class XrefMappingCache implements GdbEventListener {
+
+	public static final int DEFAULT_MAX_SIZE = 200000;
+
+	private final GdbManager gdbManager;
+	private final Map<Key, Set<Xref>> cache;
+	private long hits;
+	private long misses;
+	// increased on every invalidation, so results of mappings that started
+	// before the gene database changed are not stored
+	private long generation;
+
+	public XrefMappingCache(GdbManager gdbManager) {
+		this(gdbManager, DEFAULT_MAX_SIZE);
+	}
+
+	public XrefMappingCache(GdbManager gdbManager, final int maxSize) {
+		this.gdbManager = gdbManager;
+		cache = new LinkedHashMap<Key, Set<Xref>>(1024, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Set<Xref>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Maps a single Xref with all mappers of the current gene database.
+	 *
+	 * @return the mapped Xrefs, including the Xref itself. The set must not
+	 *         be modified.
+	 */
+	public Set<Xref> mapID(Xref xref, DataSource... targets) throws IDMapperException {
+		return mapAll(Collections.singleton(xref), targets, 1).get(xref);
+	}
+
+	/**
+	 * Maps all given Xrefs with all mappers of the current gene database.
+	 * Xrefs that are not in the cache are mapped in batches of at most
+	 * batchSize.
+	 *
+	 * @return for each of the given Xrefs the mapped Xrefs, including the
+	 *         Xref itself. The sets must not be modified.
+	 */
+	public Map<Xref, Set<Xref>> mapAll(Collection<Xref> xrefs, DataSource[] targets, int batchSize)
+			throws IDMapperException {
+		// one set for all keys of this call, its hash code is computed once
+		Set<DataSource> targetSet = new HashSet<DataSource>(Arrays.asList(targets));
+		int targetsHash = targetSet.hashCode();
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		Set<Xref> missing = new HashSet<Xref>();
+		long startGeneration;
+		synchronized (this) {
+			startGeneration = generation;
+			for (Xref xref : xrefs) {
+				Set<Xref> cached = cache.get(new Key(xref, targetSet, targetsHash));
+				if (cached != null) {
+					hits++;
+					result.put(xref, cached);
+				} else if (missing.add(xref)) {
+					misses++;
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return result;
+		}
+
+		// the database is queried outside the lock, so cache lookups from
+		// other threads don't have to wait for it
+		List<IDMapper> mappers = gdbManager.getCurrentGdb().getMappers();
+		Map<Xref, Set<Xref>> mapped = BatchMapper.mapAll(mappers, missing, targets, batchSize);
+		synchronized (this) {
+			for (Map.Entry<Xref, Set<Xref>> entry : mapped.entrySet()) {
+				Set<Xref> equivalents = Collections.unmodifiableSet(entry.getValue());
+				result.put(entry.getKey(), equivalents);
+				if (generation == startGeneration) {
+					cache.put(new Key(entry.getKey(), targetSet, targetsHash), equivalents);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all cached mappings.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		generation++;
+	}
+
+	@Override
+	public void gdbEvent(GdbEvent e) {
+		clear();
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the number of Xrefs that were found in the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of Xrefs that had to be mapped with the gene
+	 *         database
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private static class Key {
+		private final Xref xref;
+		private final Set<DataSource> targets;
+		private final int hash;
+
+		Key(Xref xref, Set<DataSource> targets, int targetsHash) {
+			this.xref = xref;
+			this.targets = targets;
+			hash = 31 * xref.hashCode() + targetsHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return xref.equals(other.xref) && targets.equals(other.targets);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.gui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bridgedb.Xref;
+import org.pathvisio.regint.impl.ResultsCache;
+
+/**
+ * Cache of the backpage HTML of the interaction partners shown in the
+ * {@link RegIntTab}, so clicking through the partners of a node only builds
+ * each backpage once. The HTML is stored per partner, selected Xref,
+ * generation of the {@link ResultsCache} and expression dataset, so a
+ * backpage is built again after an import, a change of the selected files or
+ * gene database, or when another dataset is loaded. The least recently used
+ * backpages are evicted when the cache is full.
+ *
+ * @author mku
+ */
+public class BackpageCache {
+
+	public static final int DEFAULT_MAX_SIZE = 200;
+
+	private final Map<Key, String> cache;
+
+	public BackpageCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public BackpageCache(final int maxSize) {
+		cache = new LinkedHashMap<Key, String>(64, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached HTML, or null if the backpage is not cached
+	 */
+	public synchronized String get(Key key) {
+		return cache.get(key);
+	}
+
+	public synchronized void put(Key key, String html) {
+		cache.put(key, html);
+	}
+
+	/**
+	 * Identifies the backpage of a partner.
+	 */
+	public static class Key {
+		private final Xref partner;
+		private final Xref selected;
+		private final long generation;
+		// compared by identity, the data of a dataset does not change
+		private final Object dataset;
+
+		/**
+		 * @param generation
+		 *            the generation of the {@link ResultsCache}
+		 * @param dataset
+		 *            the loaded expression dataset, or null
+		 */
+		public Key(Xref partner, Xref selected, long generation, Object dataset) {
+			this.partner = partner;
+			this.selected = selected;
+			this.generation = generation;
+			this.dataset = dataset;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * (31 * partner.hashCode() + selected.hashCode()) + (int) generation;
+			return 31 * hash + System.identityHashCode(dataset);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return partner.equals(other.partner) && selected.equals(other.selected)
+					&& generation == other.generation && dataset == other.dataset;
+		}
+	}
+}
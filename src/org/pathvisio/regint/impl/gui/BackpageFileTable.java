@@ -18,18 +18,13 @@
 package org.pathvisio.regint.impl.gui;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.Set;
 
-import org.bridgedb.DataSource;
-import org.bridgedb.IDMapper;
-import org.bridgedb.IDMapperException;
 import org.bridgedb.Xref;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.gui.BackpageTextProvider.BackpageHook;
 import org.pathvisio.regint.RegIntPlugin;
+import org.pathvisio.regint.impl.Interaction;
 import org.pathvisio.regint.impl.ResultsObj;
-import org.pathvisio.regint.impl.preferences.RegIntPreferences;
 
 /**
  * The class that displays the table of files that the selected interaction
@@ -41,7 +36,6 @@ import org.pathvisio.regint.impl.preferences.RegIntPreferences;
 public class BackpageFileTable implements BackpageHook {
 	private ResultsObj results;
 	private RegIntPlugin plugin;
-	private Set<Xref> crfs;
 
 	public BackpageFileTable(ResultsObj results, RegIntPlugin plugin) {
 		this.results = results;
@@ -50,47 +44,21 @@ public class BackpageFileTable implements BackpageHook {
 
 	@Override
 	public String getHtml(PathwayElement e) {
-		Xref selectedXref = results.getSelectedXref();
 		Xref xref = e.getXref();
-		String text = "";
-		text += "<H1>" + e.getTextLabel() +" (" + xref.getDataSource().getSystemCode() + ": " + xref.getId() + ")</H1>";
-		text += "<table border=\"1\">";
-		try {
-			DataSource[] usedDataSourceArray = new DataSource[plugin.getUsedDataSources().size()];
-			usedDataSourceArray = plugin.getUsedDataSources().toArray(usedDataSourceArray);
-			crfs = new HashSet<Xref>();
-			crfs.add(selectedXref);
-			for (IDMapper mapper : plugin.getDesktop().getSwingEngine().getGdbManager().getCurrentGdb().getMappers()) {
-				Set<Xref> someXrefs = mapper.mapID(selectedXref, usedDataSourceArray);
-				crfs.addAll(someXrefs);
+		StringBuilder html = new StringBuilder();
+		html.append("<H1>").append(e.getTextLabel()).append(" (").append(xref.getDataSource().getSystemCode())
+				.append(": ").append(xref.getId()).append(")</H1>");
+		html.append("<table border=\"1\">");
+		// the results only contain interactions with the nodes of the
+		// selected Xref, so the interaction does not have to be mapped
+		Interaction interaction = results.getInteraction(xref);
+		if (interaction != null) {
+			for (File intFile : interaction.getFiles(plugin.getFileSelection())) {
+				html.append("<tr><td>From file: </td><td>").append(intFile.getName()).append("</td></tr>");
 			}
-		} catch (IDMapperException idme) {
-			idme.printStackTrace();
 		}
-		for (Xref xr : crfs) {
-			if (results.getRegulatorMap() != null && !results.getRegulatorMap().isEmpty()
-					&& results.getRegulatorMap().containsKey(xref)) {
-				if (results.getRegulatorMap().get(xref).getTarget().equals(xr)) {
-					for (File intFile : results.getRegulatorMap().get(xref).getFiles()) {
-						if (RegIntPreferences.getPreferences().getSelectedIntFiles().contains(intFile)) {
-							text += "<tr><td>From file: </td><td>" + intFile.getName() + "</td></tr>";
-						}
-					}
-				}
-			}
-			if (results.getTargetMap() != null && !results.getTargetMap().isEmpty()
-					&& results.getTargetMap().containsKey(xref)) {
-				if (results.getTargetMap().get(xref).getRegulator().equals(xr)) {
-					for (File intFile : results.getTargetMap().get(xref).getFiles()) {
-						if (RegIntPreferences.getPreferences().getSelectedIntFiles().contains(intFile)) {
-							text += "<tr><td>From file: </td><td>" + intFile.getName() + "</td></tr>";
-						}
-					}
-				}
-			}
-		}
-		text += "</table>";
-		return text;
+		html.append("</table>");
+		return html.toString();
 	}
 
 }
@@ -17,17 +17,16 @@
 
 package org.pathvisio.regint.impl.gui;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
-import org.bridgedb.AttributeMapper;
 import org.bridgedb.IDMapperException;
 import org.bridgedb.Xref;
 import org.pathvisio.core.debug.Logger;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.core.util.Utils;
 import org.pathvisio.gui.BackpageTextProvider.BackpageHook;
+import org.pathvisio.regint.impl.AttributeCache;
 import org.pathvisio.regint.impl.ResultsObj;
 
 /**
@@ -38,16 +37,16 @@ import org.pathvisio.regint.impl.ResultsObj;
  */
 public class BackpageInfo implements BackpageHook {
 	private ResultsObj results;
-	private final AttributeMapper attributeMapper;
+	private final AttributeCache attributeCache;
 
-	public BackpageInfo(AttributeMapper attributeMapper, ResultsObj results) {
+	public BackpageInfo(AttributeCache attributeCache, ResultsObj results) {
 		this.results = results;
-		this.attributeMapper = attributeMapper;
+		this.attributeCache = attributeCache;
 	}
 
 	public String getHtml(PathwayElement e) {
 		Xref xref = e.getXref();
-		String text = "";
+		StringBuilder text = new StringBuilder();
 		String type;
 		if (results.getRegulatorMap().containsKey(xref)) {
 			type = "Regulator";
@@ -56,22 +55,16 @@ public class BackpageInfo implements BackpageHook {
 		}
 		// type will be displayed in the header, make either "Regulator" or
 		// "Target";
-		text += "<H1>" + type + " information</H1>";
+		text.append("<H1>").append(type).append(" information</H1>");
 
 		if (e.getXref().getId() == null || "".equals(e.getXref().getId())) {
-			text += "<font color='red'>Invalid annotation: missing identifier.</font>";
-			return text;
+			text.append("<font color='red'>Invalid annotation: missing identifier.</font>");
+			return text.toString();
 		}
 
 		try {
-			StringBuilder bpInfo = new StringBuilder("<TABLE border = 1>");
-
-			Map<String, Set<String>> attributes = null;
-			if (e.getXref().getDataSource() != null) {
-				attributes = attributeMapper.getAttributes(e.getXref());
-			} else {
-				attributes = new HashMap<String, Set<String>>();
-			}
+			// usually fetched with the other partners by findInteractions
+			Map<String, Set<String>> attributes = attributeCache.getAttributes(e.getXref());
 			String[][] table;
 
 			table = new String[][] { { "ID", e.getXref().getId() },
@@ -80,20 +73,20 @@ public class BackpageInfo implements BackpageHook {
 					{ "Description", Utils.oneOf(attributes.get("Description")) },
 					{ "Chr", Utils.oneOf(attributes.get("Chromosome")) }, };
 
+			text.append("<TABLE border = 1>");
 			for (String[] row : table) {
 				if (!(row[1] == null)) {
-					bpInfo.append("<TR><TH>");
-					bpInfo.append(row[0]);
-					bpInfo.append(":<TH>");
-					bpInfo.append(row[1]);
+					text.append("<TR><TH>");
+					text.append(row[0]);
+					text.append(":<TH>");
+					text.append(row[1]);
 				}
 			}
-			bpInfo.append("</TABLE>");
-			text += bpInfo.toString();
+			text.append("</TABLE>");
 		} catch (IDMapperException ex) {
-			text += "Exception occurred, see log for details</br>";
+			text.append("Exception occurred, see log for details</br>");
 			Logger.log.error("Error fetching backpage info", ex);
 		}
-		return text;
+		return text.toString();
 	}
 }
@@ -17,10 +17,10 @@
 
 package org.pathvisio.regint.impl.gui;
 
-import org.bridgedb.Xref;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.gui.BackpageTextProvider.BackpageHook;
 import org.pathvisio.regint.dialog.LoadFileWizard;
+import org.pathvisio.regint.impl.Interaction;
 import org.pathvisio.regint.impl.ResultsObj;
 
 /**
@@ -39,20 +39,17 @@ public class BackpageMiscInfo implements BackpageHook {
 
 	@Override
 	public String getHtml(PathwayElement e) {
-		Xref xref = e.getXref();
-		String text = "";
-		if (results.getRegulatorMap() != null && !results.getRegulatorMap().isEmpty()
-				&& results.getRegulatorMap().containsKey(xref)) {
-			text = "<H1>Miscellaneous Information</H1>" + results.getRegulatorMap().get(xref).getMiscInfo();
-		} else if (results.getTargetMap() != null && !results.getTargetMap().isEmpty()
-				&& results.getTargetMap().containsKey(xref)) {
-			text = "<H1>Miscellaneous Information</H1>" + results.getTargetMap().get(xref).getMiscInfo();
+		Interaction interaction = results.getInteraction(e.getXref());
+		if (interaction == null) {
+			return "";
 		}
-		if (!text.equals("<H1>Miscellaneous Information</H1>")) {
-			return text;
-		} else {
+		String miscInfo = interaction.getMiscInfo();
+		if (miscInfo.equals("")) {
 			return "";
 		}
+		StringBuilder html = new StringBuilder("<H1>Miscellaneous Information</H1>");
+		html.append(miscInfo);
+		return html.toString();
 	}
 
 }
@@ -17,9 +17,9 @@
 
 package org.pathvisio.regint.impl.gui;
 
-import org.bridgedb.Xref;
 import org.pathvisio.core.model.PathwayElement;
 import org.pathvisio.gui.BackpageTextProvider.BackpageHook;
+import org.pathvisio.regint.impl.Interaction;
 import org.pathvisio.regint.impl.ResultsObj;
 
 /**
@@ -38,20 +38,13 @@ public class BackpagePMID implements BackpageHook {
 
 	@Override
 	public String getHtml(PathwayElement e) {
-		Xref xref = e.getXref();
-		String text = "";
-		if (results.getRegulatorMap() != null && !results.getRegulatorMap().isEmpty()
-				&& results.getRegulatorMap().containsKey(xref)
-				&& !results.getRegulatorMap().get(xref).getPMID().equals("")) {
-			text = "<br /><a href=\"http://www.ncbi.nlm.nih.gov/pubmed?term="
-					+ results.getRegulatorMap().get(xref).getPMID() + "\">PubMed</a>";
+		Interaction interaction = results.getInteraction(e.getXref());
+		if (interaction == null || interaction.getPMID().equals("")) {
+			return "";
 		}
-		if (results.getTargetMap() != null && !results.getTargetMap().isEmpty()
-				&& results.getTargetMap().containsKey(xref) && !results.getTargetMap().get(xref).getPMID().equals("")) {
-			text = "<br /><a href=\"http://www.ncbi.nlm.nih.gov/pubmed?term="
-					+ results.getTargetMap().get(xref).getPMID() + "\">PubMed</a>";
-		}
-		return text;
+		StringBuilder html = new StringBuilder("<br /><a href=\"http://www.ncbi.nlm.nih.gov/pubmed?term=");
+		html.append(interaction.getPMID()).append("\">PubMed</a>");
+		return html.toString();
 	}
 
 }
@@ -0,0 +1,229 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.ScrollPaneConstants;
+
+import org.bridgedb.Xref;
+import org.pathvisio.core.model.LineStyle;
+import org.pathvisio.core.model.ObjectType;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+import org.pathvisio.core.model.ShapeType;
+import org.pathvisio.core.view.VPathway;
+import org.pathvisio.gui.view.VPathwaySwing;
+import org.pathvisio.regint.RegIntPlugin;
+import org.pathvisio.regint.impl.FileSelection;
+import org.pathvisio.regint.impl.Interaction;
+import org.pathvisio.regint.impl.PartnerRanking;
+import org.pathvisio.regint.impl.ResultsObj;
+
+/**
+ * The list of regulators or targets of the selected element in the
+ * {@link RegIntTab}. The partners are data nodes of a {@link Pathway}, so the
+ * visualization manager colours them with the expression data, next to a
+ * column with an info button and the number of selected files of each
+ * interaction.
+ * <p>
+ * Only the rows around the visible part of the list are added to the
+ * pathway: the list starts with one page of rows and
+ * {@link #loadVisibleRows()} adds the next pages when the list is scrolled.
+ * The info column is a single component that paints all rows, instead of a
+ * panel and listener per row.
+ *
+ * @author mku
+ */
+public class PartnerList extends JPanel {
+
+	// height of a row in the list
+	static final int ROW_HEIGHT = 35;
+	// number of rows added at a time
+	static final int PAGE_SIZE = 50;
+	private static final int NODE_WIDTH = 120;
+	private static final int COLUMN_WIDTH = 123;
+
+	private static ImageIcon icon;
+
+	private final RegIntPlugin plugin;
+	private final ResultsObj results;
+	private final Map<Xref, Interaction> interactions;
+	private final List<Xref> partners;
+	private final FileSelection selection;
+	private final Pathway pathway = new Pathway();
+	private final VPathway vPathway;
+	// number of partners added to the pathway
+	private int loaded = 0;
+
+	/**
+	 * @param partners
+	 *            the partners in the order they are listed, all keys of
+	 *            interactions. Only the partners of the loaded rows are
+	 *            requested, see {@link PartnerRanking}.
+	 * @param interactions
+	 *            the regulator or target map of the results
+	 * @param selection
+	 *            the selected files, whose number is shown for each partner
+	 */
+	public PartnerList(RegIntPlugin plugin, ResultsObj results, Map<Xref, Interaction> interactions,
+			List<Xref> partners, FileSelection selection) {
+		super(new BorderLayout());
+		this.plugin = plugin;
+		this.results = results;
+		this.interactions = interactions;
+		this.partners = partners;
+		this.selection = selection;
+
+		JScrollPane nodeScroll = new JScrollPane(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER,
+				ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+		nodeScroll.setBorder(null);
+		Dimension size = new Dimension(COLUMN_WIDTH, partners.size() * ROW_HEIGHT);
+		nodeScroll.setPreferredSize(size);
+		nodeScroll.setMinimumSize(new Dimension(50, 50));
+		VPathwaySwing vPathwaySwing = new VPathwaySwing(nodeScroll);
+		vPathway = vPathwaySwing.createVPathway();
+		vPathway.setEditMode(false);
+		addRows(Math.min(PAGE_SIZE, partners.size()));
+		vPathway.fromModel(pathway);
+		vPathway.setSelectionEnabled(false);
+		vPathway.addVPathwayListener(plugin.getDesktop().getVisualizationManager());
+		nodeScroll.add(vPathwaySwing);
+
+		add(nodeScroll, BorderLayout.WEST);
+		add(new InfoColumn(), BorderLayout.CENTER);
+		setBackground(Color.WHITE);
+	}
+
+	/**
+	 * Adds the rows up to a page below the visible part of the list to the
+	 * pathway, call when the list is scrolled.
+	 */
+	public void loadVisibleRows() {
+		Rectangle visible = getVisibleRect();
+		if (visible.isEmpty()) {
+			return;
+		}
+		int needed = (visible.y + visible.height) / ROW_HEIGHT + 1;
+		if (needed > loaded) {
+			// whole pages, so scrolling slowly does not add a few rows at a
+			// time
+			int pages = (needed - loaded + PAGE_SIZE - 1) / PAGE_SIZE;
+			addRows(Math.min(pages * PAGE_SIZE, partners.size() - loaded));
+		}
+	}
+
+	private void addRows(int count) {
+		for (int i = loaded; i < loaded + count; i++) {
+			// added to the pathway model, the VPathway listens to it
+			pathway.add(createPathwayElement(partners.get(i), i));
+		}
+		loaded += count;
+		repaint();
+	}
+
+	private PathwayElement createPathwayElement(Xref xref, int row) {
+		PathwayElement pwe = PathwayElement.createPathwayElement(ObjectType.DATANODE);
+		pwe.setDataSource(xref.getDataSource());
+		pwe.setElementID(xref.getId());
+		pwe.setTextLabel(plugin.getAttributeCache().getLabel(xref));
+		pwe.setTransparent(false);
+		pwe.setColor(Color.BLACK);
+		pwe.setShapeType(ShapeType.RECTANGLE);
+		pwe.setLineStyle(LineStyle.SOLID);
+		pwe.setInitialSize();
+		pwe.setMWidth(NODE_WIDTH);
+		pwe.setMCenterX(NODE_WIDTH / 2);
+		pwe.setMCenterY((ROW_HEIGHT * row) + 14);
+		return pwe;
+	}
+
+	/**
+	 * Removes the pathway from the visualization manager, call when the list
+	 * is no longer shown.
+	 */
+	public void dispose() {
+		vPathway.dispose();
+	}
+
+	private static ImageIcon getIcon() {
+		if (icon == null) {
+			java.net.URL imgURL = PartnerList.class.getResource("/i.gif");
+			if (imgURL != null) {
+				icon = new ImageIcon(imgURL, "information icon");
+			} else {
+				System.err.println("Couldn't find file: /i.gif");
+			}
+		}
+		return icon;
+	}
+
+	/**
+	 * The info button and number of selected files of every loaded row.
+	 */
+	private class InfoColumn extends JComponent {
+
+		InfoColumn() {
+			setPreferredSize(new Dimension(80, partners.size() * ROW_HEIGHT));
+			setCursor(new Cursor(Cursor.HAND_CURSOR));
+			addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent e) {
+					int row = e.getY() / ROW_HEIGHT;
+					if (row < loaded) {
+						plugin.updateBackpage(partners.get(row), results);
+					}
+				}
+			});
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			Rectangle clip = g.getClipBounds();
+			int first = Math.max(0, clip.y / ROW_HEIGHT);
+			int last = Math.min(loaded, (clip.y + clip.height) / ROW_HEIGHT + 1);
+			FontMetrics metrics = g.getFontMetrics();
+			ImageIcon image = getIcon();
+			int textX = image == null ? 8 : image.getIconWidth() + 16;
+			for (int row = first; row < last; row++) {
+				int center = row * ROW_HEIGHT + 14;
+				if (image != null) {
+					image.paintIcon(this, g, 8, center - image.getIconHeight() / 2);
+				}
+				Interaction interaction = interactions.get(partners.get(row));
+				String files = interaction.countFiles(selection) + "/" + selection.size();
+				g.setColor(Color.BLACK);
+				g.drawString(files, textX, center + metrics.getAscent() / 2 - 1);
+			}
+		}
+	}
+}
@@ -19,45 +19,42 @@ package org.pathvisio.regint.impl.gui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Cursor;
 import java.awt.Desktop;
-import java.awt.Dimension;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.BoxLayout;
-import javax.swing.ImageIcon;
+import javax.swing.JEditorPane;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
-import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingWorker;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.event.HyperlinkListener;
 
+import org.bridgedb.IDMapperException;
 import org.bridgedb.Xref;
-import org.pathvisio.core.model.LineStyle;
 import org.pathvisio.core.model.ObjectType;
 import org.pathvisio.core.model.Pathway;
 import org.pathvisio.core.model.PathwayElement;
-import org.pathvisio.core.model.ShapeType;
-import org.pathvisio.core.view.VPathway;
 import org.pathvisio.desktop.gex.BackpageExpression;
-import org.pathvisio.gui.BackpagePane;
 import org.pathvisio.gui.BackpageTextProvider;
 import org.pathvisio.gui.SwingEngine;
-import org.pathvisio.gui.view.VPathwaySwing;
 import org.pathvisio.regint.RegIntPlugin;
-import org.pathvisio.regint.dialog.PreferenceDialog;
-import org.pathvisio.regint.impl.InfoButtonListener;
+import org.pathvisio.regint.impl.FileSelection;
 import org.pathvisio.regint.impl.Interaction;
+import org.pathvisio.regint.impl.PartnerRanking;
+import org.pathvisio.regint.impl.PathwayPrefetch;
+import org.pathvisio.regint.impl.ResultsCache;
 import org.pathvisio.regint.impl.ResultsObj;
 import org.pathvisio.regint.impl.preferences.RegIntPreferences;
 
@@ -81,25 +78,43 @@ public class RegIntTab extends JSplitPane {
 	private RegIntPlugin plugin;
 	private JPanel pathwayPanel = new JPanel();
 	private JPanel backpagePanel = new JPanel();
-	private ImageIcon icon = createImageIcon("/i.gif", "information icon");
-	private RegIntTab tab;
-	private CellConstraints cc = new CellConstraints();
-	private int y;
-	private int x;
+	private JScrollPane pathwayScroll;
+	// the files of the running import that can not be queried yet
+	private JLabel pendingLabel = new JLabel();
+	// the lists of the shown results, only accessed on the event dispatch
+	// thread
+	private List<PartnerList> partnerLists = new ArrayList<PartnerList>();
 	private SwingEngine swingEngine;
+	// the query for the current selection, only accessed on the event
+	// dispatch thread
+	private SwingWorker<ResultsObj, Void> query;
+	// the backpage being built for the clicked partner, only accessed on the
+	// event dispatch thread
+	private SwingWorker<String, Void> backpageQuery;
+	private BackpageCache backpageCache = new BackpageCache();
 
 	public RegIntTab(RegIntPlugin plugin) {
 		super(JSplitPane.VERTICAL_SPLIT);
-		tab = this;
 		this.plugin = plugin;
 		pathwayPanel.setLayout(new BorderLayout());
 		backpagePanel.setLayout(new BoxLayout(backpagePanel, BoxLayout.PAGE_AXIS));
 		swingEngine = plugin.getDesktop().getSwingEngine();
-		JScrollPane pathwayScroll = new JScrollPane(pathwayPanel);
+		pathwayScroll = new JScrollPane(pathwayPanel);
 		pathwayScroll.getVerticalScrollBar().setUnitIncrement(20);
+		pathwayScroll.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+			public void adjustmentValueChanged(AdjustmentEvent e) {
+				for (PartnerList list : partnerLists) {
+					list.loadVisibleRows();
+				}
+			}
+		});
 		JScrollPane backpageScroll = new JScrollPane(backpagePanel);
 		backpageScroll.getVerticalScrollBar().setUnitIncrement(20);
-		setTopComponent(pathwayScroll);
+		pendingLabel.setVisible(false);
+		JPanel topPanel = new JPanel(new BorderLayout());
+		topPanel.add(pendingLabel, BorderLayout.NORTH);
+		topPanel.add(pathwayScroll, BorderLayout.CENTER);
+		setTopComponent(topPanel);
 		setBottomComponent(backpageScroll);
 		setOneTouchExpandable(true);
 		setDividerLocation(400);
@@ -117,25 +132,77 @@ public class RegIntTab extends JSplitPane {
 	 *            selecting an Xref in the main pathway
 	 */
 	public void updateBackpagePanel(Xref xref, ResultsObj results) {
-		backpagePanel.removeAll();
-		backpagePanel.setLayout(new BoxLayout(backpagePanel, BoxLayout.PAGE_AXIS));
+		cancelBackpage();
+		final BackpageCache.Key key = new BackpageCache.Key(xref, results.getSelectedXref(), plugin
+				.getResultsCache().getGeneration(), plugin.getDesktop().getGexManager().getCurrentGex());
+		String html = backpageCache.get(key);
+		if (html != null) {
+			showBackpage(html);
+			return;
+		}
 
-		PathwayElement e = PathwayElement.createPathwayElement(ObjectType.DATANODE);
+		final PathwayElement e = PathwayElement.createPathwayElement(ObjectType.DATANODE);
 		e.setDataSource(xref.getDataSource());
 		e.setElementID(xref.getId());
-		BackpageTextProvider bpt = new BackpageTextProvider();
+		e.setTextLabel(plugin.getAttributeCache().getLabel(xref));
+		final BackpageTextProvider bpt = new BackpageTextProvider();
 
-		bpt.addBackpageHook(new BackpageInfo(swingEngine.getGdbManager().getCurrentGdb(), results));
-		// TODO: fix file table, doesn't always show files
+		bpt.addBackpageHook(new BackpageInfo(plugin.getAttributeCache(), results));
 		bpt.addBackpageHook(new BackpageFileTable(results, plugin));
 		bpt.addBackpageHook(new BackpagePMID(results));
 		// TODO: change this to use multiple BridgeDb databases?
 		bpt.addBackpageHook(new BackpageTextProvider.BackpageXrefs(swingEngine.getGdbManager().getCurrentGdb()));
 		bpt.addBackpageHook(new BackpageExpression(plugin.getDesktop().getGexManager()));
 		bpt.addBackpageHook(new BackpageMiscInfo(results));
-		BackpagePane bpp = new BackpagePane(bpt, swingEngine.getEngine());
-		bpp.setInput(e);
 
+		backpagePanel.removeAll();
+		JLabel loading = new JLabel("<html><br>&nbsp;&nbsp;&nbsp;&nbsp;Loading...</html>", JLabel.LEFT);
+		backpagePanel.add(loading);
+		backpagePanel.revalidate();
+		backpagePanel.repaint();
+
+		// the hooks query the gene database and expression data, so the
+		// backpage is built in the background
+		backpageQuery = new SwingWorker<String, Void>() {
+			@Override
+			protected String doInBackground() {
+				return bpt.getBackpageHTML(e);
+			}
+
+			@Override
+			protected void done() {
+				if (backpageQuery != this) {
+					// replaced by a newer click
+					return;
+				}
+				backpageQuery = null;
+				try {
+					String html = get();
+					backpageCache.put(key, html);
+					showBackpage(html);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		backpageQuery.execute();
+	}
+
+	private void cancelBackpage() {
+		if (backpageQuery != null) {
+			backpageQuery.cancel(false);
+			backpageQuery = null;
+		}
+	}
+
+	private void showBackpage(String html) {
+		backpagePanel.removeAll();
+		backpagePanel.setLayout(new BoxLayout(backpagePanel, BoxLayout.PAGE_AXIS));
+
+		JEditorPane bpp = new JEditorPane("text/html", html);
+		bpp.setEditable(false);
 		bpp.addHyperlinkListener(new HyperlinkListener() {
 
 			@Override
@@ -159,60 +226,92 @@ public class RegIntTab extends JSplitPane {
 
 	/**
 	 * Updates the top part of the {@link RegIntTab} with a list of interaction
-	 * partners of the selected Xref
+	 * partners of the selected Xref. The interactions are taken from the
+	 * {@link ResultsCache}, which the {@link PathwayPrefetch} of the pathway
+	 * fills, if they are cached, otherwise they are looked up in the
+	 * background. A query for an earlier selection
+	 * that has not finished yet is cancelled.
 	 * 
 	 * @param xref
 	 *            The {@link Xref} from the selected pathway element
 	 */
-	public void updatePathwayPanel(PathwayElement elm) {
-		Xref xref = elm.getXref();
+	public void updatePathwayPanel(final PathwayElement elm) {
+		final Xref xref = elm.getXref();
+		cancelBackpage();
 		backpagePanel.removeAll();
+		if (query != null) {
+			// not interrupted, the gene database may close its connection
+			// when a query is interrupted
+			query.cancel(false);
+			query = null;
+		}
+
+		ResultsObj cached = plugin.getResultsCache().get(xref);
+		if (cached != ResultsCache.NOT_CACHED) {
+			showResults(elm, xref, cached);
+			return;
+		}
 
 		JLabel loading = new JLabel("<html><br>&nbsp;&nbsp;&nbsp;&nbsp;Loading...</html>", JLabel.LEFT);
 		loading.setVerticalAlignment(JLabel.TOP);
+		disposePartnerLists();
 		pathwayPanel.removeAll();
 		pathwayPanel.setLayout(new BorderLayout());
 		pathwayPanel.setBackground(Color.WHITE);
 		pathwayPanel.add(loading, BorderLayout.CENTER);
 		pathwayPanel.revalidate();
 
+		query = new SwingWorker<ResultsObj, Void>() {
+			@Override
+			protected ResultsObj doInBackground() throws IDMapperException {
+				return plugin.findInteractions(xref);
+			}
+
+			@Override
+			protected void done() {
+				if (query != this) {
+					// replaced by a newer selection
+					return;
+				}
+				query = null;
+				try {
+					showResults(elm, xref, get());
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		query.execute();
+	}
+
+	/**
+	 * Shows the interaction partners found for the selected element.
+	 */
+	private void showResults(PathwayElement elm, Xref xref, ResultsObj results) {
 		try {
-			ResultsObj results = plugin.findInteractions(xref);
 			if (results != null) {
-				FormLayout layout = new FormLayout("5dlu, 123px, 3dlu, pref, 3dlu, pref, 5dlu",
-						tab.getRowLayout(results.getRegulatorMap().size(), results.getTargetMap().size()));
+				FormLayout layout = new FormLayout("5dlu, pref, 5dlu",
+						"pref, 3dlu, pref, 3dlu, pref, 7dlu, pref, 3dlu, pref");
 
 				PanelBuilder builder = new PanelBuilder(layout);
 				builder.setDefaultDialogBorder();
 
 				CellConstraints cc = new CellConstraints();
 
-				builder.addSeparator("", cc.xyw(1, 1, 7));
-				y = 2;
-				int y2 = y;
+				builder.addSeparator("", cc.xyw(1, 1, 3));
+				disposePartnerLists();
+				int y = 3;
 				if (results.getRegulatorMap().size() > 0) {
 					builder.addLabel("Regulators:", cc.xy(2, y));
-					y = y + 2;
-					y2 = y;
-					JScrollPane sourceScroll = new JScrollPane(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER,
-							ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-					sourceScroll.setMinimumSize(new Dimension(50, 50));
-					VPathwaySwing vPathwaySwing = createPathway(sourceScroll, results.getRegulatorMap(), results, builder);
-					sourceScroll.add(vPathwaySwing);
-					builder.add(sourceScroll, cc.xywh(2, y2, 1, (2 * results.getRegulatorMap().size())));
+					builder.add(createPartnerList(results.getRegulatorMap(), results), cc.xy(2, y + 2));
+					y = y + 4;
 				}
 
 				if (results.getTargetMap().size() > 0) {
-					y++;
 					builder.addLabel("Targets:", cc.xy(2, y));
-					y = y + 2;
-					y2 = y;
-					JScrollPane targetScroll = new JScrollPane(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER,
-							ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-					targetScroll.setMinimumSize(new Dimension(50, 50));
-					VPathwaySwing vPathwaySwing = createPathway(targetScroll, results.getTargetMap(), results, builder);
-					targetScroll.add(vPathwaySwing);
-					builder.add(targetScroll, cc.xywh(2, y2, 1, (2 * results.getTargetMap().size())));
+					builder.add(createPartnerList(results.getTargetMap(), results), cc.xy(2, y + 2));
 				}
 				JPanel panel = builder.getPanel();
 				pathwayPanel.removeAll();
@@ -233,7 +332,26 @@ public class RegIntTab extends JSplitPane {
 		}
 	}
 
+	/**
+	 * Shows the files of the running import that are not in the interaction
+	 * map yet, the results do not include their interactions.
+	 */
+	public void setPendingFiles(Collection<File> files) {
+		if (files.isEmpty()) {
+			pendingLabel.setVisible(false);
+			return;
+		}
+		StringBuilder text = new StringBuilder("<html>&nbsp;&nbsp;Still loading:");
+		for (File file : files) {
+			text.append("<br>&nbsp;&nbsp;&nbsp;&nbsp;").append(file.getName());
+		}
+		pendingLabel.setText(text.append("</html>").toString());
+		pendingLabel.setVisible(true);
+		revalidate();
+	}
+
 	public void setPathwayPanelText(String text) {
+		disposePartnerLists();
 		pathwayPanel.removeAll();
 		JLabel label = new JLabel(text, JLabel.LEFT);
 		label.setVerticalAlignment(JLabel.TOP);
@@ -246,163 +364,31 @@ public class RegIntTab extends JSplitPane {
 	 * Creates the list of interaction partners displayed in the top part of the
 	 * {@link RegIntTab}
 	 * 
-	 * @param parent
-	 *            The {@link JScrollPane} containing either the regulators or
-	 *            the targets of the selected element
 	 * @param map
 	 *            The map of interaction partners, either regulators or targets,
 	 *            also found in results
 	 * @param results
 	 *            The entire {@link ResultsObj}. Must have map as either its
 	 *            regulator or target map
-	 * @param builder
-	 *            The {@link PanelBuilder} that will include this pathway
 	 * @return the list of interaction partners (in pathway form for expression
 	 *         visualization)
 	 */
-	private VPathwaySwing createPathway(JScrollPane parent, Map<Xref, Interaction> map, ResultsObj results, PanelBuilder builder) {
-		VPathwaySwing vPathwaySwing = new VPathwaySwing(parent);
-		VPathway vPathway = vPathwaySwing.createVPathway();
-		vPathway.setEditMode(false);
-		Pathway sourcePw = new Pathway();
-		Map<Xref, Interaction> sorted = sortXrefs(map);
-		x = 0;
-		for (Xref xref : sorted.keySet()) {
-			PathwayElement pwe = createPathwayELement(xref);
-			sourcePw.add(pwe);
-
-			JLabel linkout = new JLabel(icon);
-			JPanel linkoutPane = new JPanel();
-			linkout.addMouseListener(new InfoButtonListener(xref, results, plugin));
-			linkoutPane.add(linkout);
-			linkoutPane.setCursor(new Cursor(Cursor.HAND_CURSOR));
-			linkoutPane.setVisible(true);
-
-			List<File> uniqueFiles = new ArrayList<File>();
-			for (File intFile : sorted.get(xref).getFiles()) {
-				if (!uniqueFiles.contains(intFile)
-						&& RegIntPreferences.getPreferences().getSelectedIntFiles().contains(intFile)) {
-					uniqueFiles.add(intFile);
-				}
-			}
-			builder.addLabel(uniqueFiles.size() + "/" + RegIntPreferences.getPreferences().getSelectedIntFiles().size(),
-					cc.xy(6, y));
-
-			builder.add(linkoutPane, cc.xy(4, y));
-			y = y + 2;
-			x++;
-		}
-		vPathway.fromModel(sourcePw);
-		vPathway.setSelectionEnabled(false);
-		vPathway.addVPathwayListener(plugin.getDesktop().getVisualizationManager());
-		return vPathwaySwing;
-	}
-
-	private PathwayElement createPathwayELement(Xref xref) {
-		PathwayElement pwe = PathwayElement.createPathwayElement(ObjectType.DATANODE);
-		pwe.setDataSource(xref.getDataSource());
-		pwe.setElementID(xref.getId());
-		pwe.setTextLabel(xref.toString());
-		pwe.setTransparent(false);
-		pwe.setColor(Color.BLACK);
-		pwe.setShapeType(ShapeType.RECTANGLE);
-		pwe.setLineStyle(LineStyle.SOLID);
-		pwe.setInitialSize();
-		pwe.setMWidth(120);
-		pwe.setMCenterX(60);
-		pwe.setMCenterY((35 * x) + 14);
-		return pwe;
+	private PartnerList createPartnerList(Map<Xref, Interaction> map, ResultsObj results) {
+		FileSelection selection = plugin.getFileSelection();
+		// ordered by number of files if set in the PreferenceDialog, the
+		// first page is ordered immediately
+		boolean byFiles = RegIntPreferences.getPreferences().getSort() == RegIntPreferences.BY_NUMBER_OF_OCCURRENCES;
+		PartnerRanking sorted = new PartnerRanking(map, selection, plugin.getAttributeCache(), byFiles,
+				PartnerList.PAGE_SIZE);
+		PartnerList list = new PartnerList(plugin, results, map, sorted, selection);
+		partnerLists.add(list);
+		return list;
 	}
 
-	/**
-	 * Sorts the list of interaction partners. Alphabetical sorting is the
-	 * default, but can be set to sort by number of occurrences in
-	 * {@link PreferenceDialog}.
-	 * 
-	 * @param map
-	 *            The interactions to sort
-	 * @return The sorted interactions
-	 */
-	private Map<Xref, Interaction> sortXrefs(Map<Xref, Interaction> map) {
-		Map<Xref, Interaction> sorted = new LinkedHashMap<Xref, Interaction>();
-		if (RegIntPreferences.getPreferences().getSort() == RegIntPreferences.BY_NUMBER_OF_OCCURRENCES) {
-			List<ObjectsToSort> list = new ArrayList<ObjectsToSort>();
-
-			for (Xref xref : map.keySet()) {
-				ObjectsToSort obj = new ObjectsToSort(xref, map.get(xref).getFiles().size());
-				list.add(obj);
-			}
-
-			Collections.sort(list);
-
-			for (ObjectsToSort obj : list) {
-				sorted.put(obj.getXref(), map.get(obj.getXref()));
-			}
-		} else {
-			sorted = new TreeMap<Xref, Interaction>(map);// alphabetical sorting
-															// as default
+	private void disposePartnerLists() {
+		for (PartnerList list : partnerLists) {
+			list.dispose();
 		}
-		return sorted;
+		partnerLists.clear();
 	}
-
-	private String getRowLayout(int source, int target) {
-		String formLayoutString = "20dlu";
-		if (source > 0) {
-			for (int i = 0; i <= source; i++) {
-				formLayoutString = formLayoutString + ", pref, 3dlu";
-			}
-		}
-		if (target > 0) {
-			formLayoutString = formLayoutString + ", 7dlu, pref, 3dlu";
-			for (int i = 0; i < target; i++) {
-				formLayoutString = formLayoutString + ", pref, 3dlu";
-			}
-		}
-		return formLayoutString;
-	}
-
-	/** Returns an ImageIcon, or null if the path was invalid. */
-	protected ImageIcon createImageIcon(String path, String description) {
-		java.net.URL imgURL = getClass().getResource(path);
-		if (imgURL != null) {
-			return new ImageIcon(imgURL, description);
-		} else {
-			System.err.println("Couldn't find file: " + path);
-			return null;
-		}
-	}
-
-	class ObjectsToSort implements Comparable<ObjectsToSort> {
-
-		private Xref xref;
-		private Integer files = 0;
-
-		public ObjectsToSort(Xref xref, Integer files) {
-			this.xref = xref;
-			this.files = files;
-		}
-
-		public Xref getXref() {
-			return xref;
-		}
-
-		public void setXref(Xref xref) {
-			this.xref = xref;
-		}
-
-		public Integer getFiles() {
-			return files;
-		}
-
-		public void setFiles(Integer files) {
-			this.files = files;
-		}
-
-		@Override
-		public int compareTo(ObjectsToSort o) {
-			return o.getFiles().compareTo(files);
-		}
-
-	}
-
-}
\ No newline at end of file
+}
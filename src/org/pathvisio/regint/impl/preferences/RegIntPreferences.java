@@ -33,9 +33,13 @@ public class RegIntPreferences {
 	public static final int BY_NUMBER_OF_OCCURRENCES = 1;
 	private int[] selectedIntFileIndices;
 	private LinkedHashSet<File> selectedIntFiles;
+	// set in the PreferenceDialog, read by the import and the prefetch
+	private volatile int mappingBatchSize;
+	public static final int DEFAULT_MAPPING_BATCH_SIZE = 1000;
 
 	private RegIntPreferences() {
 		sort = ALPHABETICALLY;
+		mappingBatchSize = DEFAULT_MAPPING_BATCH_SIZE;
 	}
 
 	public int getSort() {
@@ -66,6 +70,20 @@ public class RegIntPreferences {
 		selectedIntFiles = intFiles;
 	}
 
+	/**
+	 * @return the number of identifiers mapped in one query to the gene
+	 *         database during import
+	 */
+	public int getMappingBatchSize() {
+		return mappingBatchSize;
+	}
+
+	public void setMappingBatchSize(int size) {
+		if (size > 0) {
+			mappingBatchSize = size;
+		}
+	}
+
 	public static RegIntPreferences getPreferences() {
 		if (preferences == null) {
 			preferences = new RegIntPreferences();
@@ -0,0 +1,137 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens interaction files that may be compressed. Files ending in .gz or .bgz
+ * are read as gzip, which includes the concatenated blocks of bgzip, and
+ * files ending in .zip are read as the first file in the archive. Other files
+ * are read as they are.
+ *
+ * @author mku
+ */
+public class CompressedInput {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * @return true if the file is decompressed by {@link #open(File, AtomicLong)}
+	 */
+	public static boolean isCompressed(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".gz") || name.endsWith(".bgz") || name.endsWith(".zip");
+	}
+
+	/**
+	 * Opens the file and decompresses it if it is compressed.
+	 *
+	 * @param fileBytesRead
+	 *            increased by the number of bytes read from the file, before
+	 *            decompression, or null
+	 */
+	public static InputStream open(File file, AtomicLong fileBytesRead) throws IOException {
+		return open(new FileInputStream(file), file.getName(), fileBytesRead);
+	}
+
+	/**
+	 * Decompresses a stream of the contents of a file, if the file is
+	 * compressed.
+	 *
+	 * @param fileName
+	 *            the name of the file, the extension tells how it is
+	 *            compressed
+	 * @param fileBytesRead
+	 *            increased by the number of bytes read from the stream, before
+	 *            decompression, or null
+	 */
+	public static InputStream open(InputStream raw, String fileName, AtomicLong fileBytesRead) throws IOException {
+		InputStream in = new BufferedInputStream(raw, BUFFER_SIZE);
+		if (fileBytesRead != null) {
+			in = new CountingInputStream(in, fileBytesRead);
+		}
+		String name = fileName.toLowerCase();
+		try {
+			if (name.endsWith(".gz") || name.endsWith(".bgz")) {
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			}
+			if (name.endsWith(".zip")) {
+				ZipInputStream zip = new ZipInputStream(in);
+				ZipEntry entry = zip.getNextEntry();
+				while (entry != null && entry.isDirectory()) {
+					entry = zip.getNextEntry();
+				}
+				if (entry == null) {
+					throw new IOException("No file in " + fileName);
+				}
+				return zip;
+			}
+			return in;
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Counts the bytes read from the underlying stream.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong count;
+
+		CountingInputStream(InputStream in, AtomicLong count) {
+			super(in);
+			this.count = count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count.addAndGet(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count.addAndGet(skipped);
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A byte range of a text file that starts at the beginning of a line and ends
+ * directly after a line break (or at the end of the file). A line break is
+ * "\n", "\r\n" or a lone "\r". Chunks can be read and decoded independently
+ * of each other, which allows parsing a large file on several threads.
+ * Compressed files are read as a stream instead, with
+ * {@link #read(PushbackInputStream, int)}.
+ *
+ * @author mku
+ */
+public class FileChunk {
+
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+	private final int index;
+	private final long start;
+	private final long end;
+
+	public FileChunk(int index, long start, long end) {
+		this.index = index;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @return the position of this chunk in the file, first chunk is 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start;
+	}
+
+	/**
+	 * Reads the bytes of the chunk. The chunk is read into a heap buffer
+	 * instead of being memory-mapped, so nothing of the file stays mapped or
+	 * locked after the chunk is parsed.
+	 */
+	public ByteBuffer read(FileChannel channel) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate((int) getLength());
+		while (bytes.hasRemaining()) {
+			if (channel.read(bytes, start + bytes.position()) < 0) {
+				throw new IOException("File was truncated while reading");
+			}
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	/**
+	 * @return the CRC-32 of the bytes of a chunk, without changing the
+	 *         position of the buffer
+	 */
+	public static long checksum(ByteBuffer bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+		return crc.getValue();
+	}
+
+	/**
+	 * Combines the CRC-32 of two consecutive byte ranges into the CRC-32 of
+	 * both, so chunks can be checksummed by the threads that parse them. The
+	 * same algorithm as crc32_combine of zlib.
+	 *
+	 * @param length2
+	 *            the number of bytes of the second range
+	 */
+	public static long combineChecksums(long crc1, long crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+		long[] even = new long[32];
+		long[] odd = new long[32];
+		// the operator for one zero bit
+		odd[0] = 0xedb88320L;
+		long row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		// the operators for two and four zero bits
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+		// apply the operator for one zero byte, then for two, four and so on
+		long length = length2;
+		while (true) {
+			gf2MatrixSquare(even, odd);
+			if ((length & 1) != 0) {
+				crc1 = gf2MatrixTimes(even, crc1);
+			}
+			length >>= 1;
+			if (length == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if ((length & 1) != 0) {
+				crc1 = gf2MatrixTimes(odd, crc1);
+			}
+			length >>= 1;
+			if (length == 0) {
+				break;
+			}
+		}
+		return crc1 ^ crc2;
+	}
+
+	private static long gf2MatrixTimes(long[] matrix, long vector) {
+		long sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(long[] square, long[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * Decodes the bytes of a chunk, replacing undecodable bytes instead of
+	 * aborting the import, like {@link java.io.FileReader} does.
+	 */
+	public static CharBuffer decode(ByteBuffer bytes, Charset charset) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		return decoder.decode(bytes);
+	}
+
+	/**
+	 * Splits the part of the file after dataStart into chunks of roughly
+	 * chunkSize bytes. Chunk boundaries are moved forward to the next line
+	 * break, so no line is split over two chunks.
+	 */
+	public static List<FileChunk> split(FileChannel channel, long dataStart, long chunkSize) throws IOException {
+		List<FileChunk> chunks = new ArrayList<FileChunk>();
+		long size = channel.size();
+		long start = dataStart;
+		while (start < size) {
+			long end = start + chunkSize >= size ? size : findLineEnd(channel, start + chunkSize);
+			chunks.add(new FileChunk(chunks.size(), start, end));
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return the position directly after the given number of lines
+	 */
+	public static long skipLines(FileChannel channel, int lines) throws IOException {
+		long pos = 0;
+		for (int i = 0; i < lines; i++) {
+			pos = findLineEnd(channel, pos);
+		}
+		return pos;
+	}
+
+	/**
+	 * Reads the next chunk of roughly chunkSize bytes from a stream, for files
+	 * that can not be memory-mapped because they are compressed. Like
+	 * {@link #split(FileChannel, long, long)}, the chunk is extended to the
+	 * next line break.
+	 *
+	 * @param in
+	 *            pushes back the byte after a lone '\r'
+	 * @return the bytes of the chunk, or null at the end of the stream
+	 */
+	public static ByteBuffer read(PushbackInputStream in, int chunkSize) throws IOException {
+		byte[] bytes = new byte[chunkSize + SCAN_BUFFER_SIZE];
+		int length = 0;
+		int read;
+		while (length < chunkSize && (read = in.read(bytes, length, chunkSize - length)) >= 0) {
+			length += read;
+		}
+		if (length == chunkSize) {
+			int b;
+			while ((b = in.read()) >= 0) {
+				if (length == bytes.length) {
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+				bytes[length++] = (byte) b;
+				if (b == '\n') {
+					break;
+				}
+				if (b == '\r') {
+					b = in.read();
+					if (b == '\n') {
+						if (length == bytes.length) {
+							bytes = Arrays.copyOf(bytes, bytes.length + 1);
+						}
+						bytes[length++] = (byte) b;
+					} else if (b >= 0) {
+						in.unread(b);
+					}
+					break;
+				}
+			}
+		}
+		return length == 0 ? null : ByteBuffer.wrap(bytes, 0, length);
+	}
+
+	/**
+	 * Skips the given number of lines of a stream.
+	 *
+	 * @param in
+	 *            pushes back the byte after a lone '\r'
+	 * @return the number of bytes skipped
+	 */
+	public static long skipLines(PushbackInputStream in, int lines) throws IOException {
+		long skipped = 0;
+		for (int i = 0; i < lines; i++) {
+			int b;
+			while ((b = in.read()) >= 0) {
+				skipped++;
+				if (b == '\n') {
+					break;
+				}
+				if (b == '\r') {
+					b = in.read();
+					if (b == '\n') {
+						skipped++;
+					} else if (b >= 0) {
+						in.unread(b);
+					}
+					break;
+				}
+			}
+		}
+		return skipped;
+	}
+
+	/**
+	 * @return the position directly after the first line break at or after
+	 *         from, or the file size if there is none
+	 */
+	private static long findLineEnd(FileChannel channel, long from) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long pos = from;
+		while (true) {
+			buffer.clear();
+			int read = channel.read(buffer, pos);
+			if (read <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n') {
+					return pos + i + 1;
+				}
+				if (b == '\r') {
+					return isLineFeed(channel, pos + i + 1) ? pos + i + 2 : pos + i + 1;
+				}
+			}
+			pos += read;
+		}
+	}
+
+	/**
+	 * @return true if the byte at the given position is '\n'
+	 */
+	private static boolean isLineFeed(FileChannel channel, long pos) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		return channel.read(buffer, pos) > 0 && buffer.get(0) == '\n';
+	}
+}
@@ -19,8 +19,8 @@ package org.pathvisio.regint.impl.util;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -534,7 +534,7 @@ public class ImportInformation {
 	 * read a sample from the selected text file
 	 */
 	private void readSample() throws IOException {
-		BufferedReader in = new BufferedReader(new FileReader(txtFile));
+		BufferedReader in = new BufferedReader(new InputStreamReader(CompressedInput.open(txtFile, null)));
 		lines = new ArrayList<String>();
 		String line;
 		while ((line = in.readLine()) != null && lines.size() < NUM_SAMPLE_LINES) {
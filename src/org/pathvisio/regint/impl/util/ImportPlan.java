@@ -0,0 +1,261 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+import java.io.File;
+
+import org.bridgedb.DataSource;
+import org.pathvisio.regint.impl.util.ImportInformation.ColumnType;
+
+/**
+ * The column settings of an {@link ImportInformation}, evaluated once before
+ * a file is imported. The settings cannot change during the import, so the
+ * per-row code only has to look at the arrays and fields of this class
+ * instead of asking the {@link ImportInformation} (which rebuilds the column
+ * names on every call) for every column of every row.
+ *
+ * @author mku
+ */
+public class ImportPlan {
+
+	// separates the values of the misc columns: the ASCII unit separator,
+	// which does not occur in text files
+	private static final char MISC_SEPARATOR = '\u001f';
+
+	private final File file;
+	private final String delimiter;
+	private final int firstDataRow;
+	private final int minColumns;
+
+	private final ColumnType[] roles;
+	private final String[] colNames;
+
+	private final int regulatorColumn;
+	private final int targetColumn;
+	// system code columns are -1 if the data source is fixed
+	private final int regulatorSyscodeColumn;
+	private final int targetSyscodeColumn;
+	private final DataSource regulatorDataSource;
+	private final DataSource targetDataSource;
+	// -1 if there is no PMID column
+	private final int pmidColumn;
+
+	// columns that end up in the miscellaneous information table
+	private final int[] miscColumns;
+	private final String[] miscColumnNames;
+
+	private final String fingerprint;
+
+	public ImportPlan(ImportInformation importInformation) {
+		file = importInformation.getTxtFile();
+		delimiter = importInformation.getDelimiter();
+		firstDataRow = importInformation.getFirstDataRow();
+		minColumns = importInformation.getSampleMaxNumCols();
+		colNames = importInformation.getColNames();
+
+		regulatorColumn = importInformation.getIdColumnReg();
+		targetColumn = importInformation.getIdColumnTar();
+		if (importInformation.isSyscodeFixedReg()) {
+			regulatorSyscodeColumn = -1;
+			regulatorDataSource = importInformation.getDataSourceReg();
+		} else {
+			regulatorSyscodeColumn = importInformation.getSyscodeColumnReg();
+			regulatorDataSource = null;
+		}
+		if (importInformation.isSyscodeFixedTar()) {
+			targetSyscodeColumn = -1;
+			targetDataSource = importInformation.getDataSourceTar();
+		} else {
+			targetSyscodeColumn = importInformation.getSyscodeColumnTar();
+			targetDataSource = null;
+		}
+		pmidColumn = importInformation.isPMIDColumnEnabled() ? importInformation.getPMIDColumn() : -1;
+
+		roles = new ColumnType[colNames.length];
+		int numMisc = 0;
+		for (int i = 0; i < roles.length; i++) {
+			roles[i] = importInformation.getColumnType(i);
+			if (isMiscRole(roles[i])) {
+				numMisc++;
+			}
+		}
+		miscColumns = new int[numMisc];
+		miscColumnNames = new String[numMisc];
+		int j = 0;
+		for (int i = 0; i < roles.length; i++) {
+			if (isMiscRole(roles[i])) {
+				miscColumns[j] = i;
+				miscColumnNames[j] = colNames[i];
+				j++;
+			}
+		}
+
+		StringBuilder settings = new StringBuilder();
+		settings.append(delimiter).append('|').append(firstDataRow).append('|').append(minColumns);
+		settings.append('|').append(regulatorColumn).append('|').append(targetColumn);
+		settings.append('|').append(regulatorSyscodeColumn).append('|').append(getSystemCode(regulatorDataSource));
+		settings.append('|').append(targetSyscodeColumn).append('|').append(getSystemCode(targetDataSource));
+		settings.append('|').append(pmidColumn);
+		for (int i = 0; i < roles.length; i++) {
+			settings.append('|').append(roles[i]).append('=').append(colNames[i]);
+		}
+		fingerprint = settings.toString();
+	}
+
+	private static String getSystemCode(DataSource dataSource) {
+		return dataSource == null ? "" : dataSource.getSystemCode();
+	}
+
+	private static boolean isMiscRole(ColumnType type) {
+		return type == ColumnType.COL_STRING || type == ColumnType.COL_NUMBER;
+	}
+
+	public RowTokenizer createTokenizer() {
+		return new RowTokenizer(delimiter);
+	}
+
+	/**
+	 * @return true if the row has enough columns to be imported
+	 */
+	public boolean isComplete(RowTokenizer row) {
+		return row.getColumnCount() >= minColumns;
+	}
+
+	public String getRegulatorId(RowTokenizer row) {
+		return row.getColumn(regulatorColumn);
+	}
+
+	public String getTargetId(RowTokenizer row) {
+		return row.getColumn(targetColumn);
+	}
+
+	public DataSource getRegulatorDataSource(RowTokenizer row) {
+		if (regulatorSyscodeColumn < 0) {
+			return regulatorDataSource;
+		}
+		return DataSource.getExistingBySystemCode(row.getColumn(regulatorSyscodeColumn));
+	}
+
+	public DataSource getTargetDataSource(RowTokenizer row) {
+		if (targetSyscodeColumn < 0) {
+			return targetDataSource;
+		}
+		return DataSource.getExistingBySystemCode(row.getColumn(targetSyscodeColumn));
+	}
+
+	public boolean hasPMID() {
+		return pmidColumn >= 0;
+	}
+
+	/**
+	 * @return the PubMed ID of the row, or an empty string if there is no
+	 *         PMID column
+	 */
+	public String getPMID(RowTokenizer row) {
+		return pmidColumn < 0 ? "" : row.getColumn(pmidColumn);
+	}
+
+	/**
+	 * Joins the values of the remaining columns of the row, to be formatted
+	 * later with {@link #formatMiscInfo(String[], String)}.
+	 *
+	 * @param buffer
+	 *            reused between rows to avoid reallocating
+	 * @return the values, or an empty string if there are no remaining
+	 *         columns
+	 */
+	public String getMiscValues(RowTokenizer row, StringBuilder buffer) {
+		if (miscColumns.length == 0) {
+			return "";
+		}
+		buffer.setLength(0);
+		for (int i = 0; i < miscColumns.length; i++) {
+			if (i > 0) {
+				buffer.append(MISC_SEPARATOR);
+			}
+			row.appendColumn(buffer, miscColumns[i]);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * @return the names of the remaining columns, in the order of
+	 *         {@link #getMiscValues(RowTokenizer, StringBuilder)}
+	 */
+	public String[] getMiscColumnNames() {
+		return miscColumnNames;
+	}
+
+	/**
+	 * Builds the HTML table with the remaining columns of a row.
+	 *
+	 * @param columnNames
+	 *            as returned by {@link #getMiscColumnNames()}
+	 * @param values
+	 *            as returned by
+	 *            {@link #getMiscValues(RowTokenizer, StringBuilder)}
+	 * @return the table, or an empty string if there are no remaining
+	 *         columns
+	 */
+	public static String formatMiscInfo(String[] columnNames, String values) {
+		if (columnNames.length == 0) {
+			return "";
+		}
+		StringBuilder buffer = new StringBuilder("<table border=\"1\">");
+		int start = 0;
+		for (int i = 0; i < columnNames.length; i++) {
+			int end = values.indexOf(MISC_SEPARATOR, start);
+			if (end < 0) {
+				end = values.length();
+			}
+			buffer.append("<tr><td>").append(columnNames[i]).append("</td><td>");
+			buffer.append(values, start, end);
+			buffer.append("</td></tr>");
+			start = Math.min(end + 1, values.length());
+		}
+		buffer.append("</table>");
+		return buffer.toString();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getFirstDataRow() {
+		return firstDataRow;
+	}
+
+	/**
+	 * @return the role of every column, in column order
+	 */
+	public ColumnType[] getColumnRoles() {
+		return roles;
+	}
+
+	public String[] getColNames() {
+		return colNames;
+	}
+
+	/**
+	 * @return a description of all settings that influence the result of the
+	 *         import, to check if a stored import is still valid
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+}
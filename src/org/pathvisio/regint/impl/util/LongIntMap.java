@@ -0,0 +1,133 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from non-negative long keys to int values, stored in two primitive
+ * arrays with open addressing, so entries don't need an object each.
+ *
+ * @author mku
+ */
+public class LongIntMap {
+
+	private static final long FREE = -1L;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+
+	public LongIntMap() {
+		this(1024);
+	}
+
+	public LongIntMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity * 3 < expectedSize * 4) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Creates a copy of the given map, changes to the copy do not affect the
+	 * original.
+	 */
+	public LongIntMap(LongIntMap other) {
+		keys = other.keys.clone();
+		values = other.values.clone();
+		size = other.size;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+	}
+
+	/**
+	 * @return the value of the key, or missing if the key is not in the map
+	 */
+	public int get(long key, int missing) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			if (keys[i] == FREE) {
+				return missing;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 *            must not be negative
+	 */
+	public void put(long key, int value) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Negative key " + key);
+		}
+		// keeps the load factor below 0.75
+		if ((size + 1) * 4 > keys.length * 3) {
+			rehash(keys.length * 2);
+		}
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != FREE && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == FREE) {
+			size++;
+		}
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != FREE) {
+				int i = slot(oldKeys[j], mask);
+				while (keys[i] != FREE) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+}
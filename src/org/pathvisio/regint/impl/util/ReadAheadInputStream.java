@@ -0,0 +1,159 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another stream on a separate thread, a few blocks ahead of the
+ * reader of this stream. Used to decompress an interaction file while the
+ * decompressed text is parsed.
+ *
+ * @author mku
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	// marks the end of the source stream in the queue
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> blocks;
+	private final Thread reader;
+	// set by the reader thread before it queues the end
+	private volatile IOException error;
+	private byte[] block = END;
+	private int pos = 0;
+	private boolean ended = false;
+
+	/**
+	 * Starts reading the source stream, which is closed when it is read
+	 * completely or this stream is closed.
+	 *
+	 * @param blockSize
+	 *            the number of bytes read from the source at a time
+	 * @param maxBlocks
+	 *            the number of blocks read ahead
+	 */
+	public ReadAheadInputStream(final InputStream source, final int blockSize, int maxBlocks, String name) {
+		blocks = new ArrayBlockingQueue<byte[]>(maxBlocks);
+		reader = new Thread(new Runnable() {
+			public void run() {
+				try {
+					try {
+						readBlocks(source, blockSize);
+					} finally {
+						source.close();
+					}
+				} catch (IOException e) {
+					error = e;
+				} catch (InterruptedException e) {
+					// this stream was closed
+					return;
+				}
+				try {
+					blocks.put(END);
+				} catch (InterruptedException e) {
+					// this stream was closed
+				}
+			}
+		}, name);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readBlocks(InputStream source, int blockSize) throws IOException, InterruptedException {
+		while (true) {
+			byte[] bytes = new byte[blockSize];
+			int length = 0;
+			int read = 0;
+			while (length < blockSize && (read = source.read(bytes, length, blockSize - length)) >= 0) {
+				length += read;
+			}
+			if (length > 0) {
+				blocks.put(length == blockSize ? bytes : Arrays.copyOf(bytes, length));
+			}
+			if (read < 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next block if the current one is read completely.
+	 *
+	 * @return false at the end of the source stream
+	 */
+	private boolean nextBlock() throws IOException {
+		while (pos == block.length) {
+			if (ended) {
+				return false;
+			}
+			try {
+				block = blocks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Reading interrupted");
+			}
+			pos = 0;
+			if (block == END) {
+				ended = true;
+				if (error != null) {
+					throw new IOException(error);
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return block[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		int count = Math.min(len, block.length - pos);
+		System.arraycopy(block, pos, b, off, count);
+		pos += count;
+		return count;
+	}
+
+	/**
+	 * Stops the reader thread.
+	 */
+	@Override
+	public void close() {
+		reader.interrupt();
+		ended = true;
+		block = END;
+		pos = 0;
+	}
+}
@@ -0,0 +1,224 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl.util;
+
+/**
+ * Splits a row of an interaction file into columns using a literal delimiter.
+ * Unlike {@link String#split(String)} the delimiter is not interpreted as a
+ * regular expression and no objects are created while splitting: only the
+ * column boundaries are recorded, and a column is turned into a
+ * {@link String} when it is asked for. One tokenizer is meant to be reused for
+ * all rows of a file.
+ *
+ * @author mku
+ */
+public class RowTokenizer {
+
+	private static final int INITIAL_COLUMNS = 16;
+
+	private final String delimiter;
+	private final char delimiterChar;
+	private final boolean quoteAware;
+
+	private CharSequence row;
+	private int[] starts = new int[INITIAL_COLUMNS];
+	private int[] ends = new int[INITIAL_COLUMNS];
+	private boolean[] quoted = new boolean[INITIAL_COLUMNS];
+	private int numColumns;
+
+	/**
+	 * Creates a tokenizer that ignores quotes.
+	 *
+	 * @param delimiter
+	 *            the literal (non-empty) column delimiter
+	 */
+	public RowTokenizer(String delimiter) {
+		this(delimiter, false);
+	}
+
+	/**
+	 * @param delimiter
+	 *            the literal (non-empty) column delimiter
+	 * @param quoteAware
+	 *            if true, a column starting with a double quote runs until the
+	 *            closing quote, so it may contain the delimiter. A doubled
+	 *            quote inside such a column stands for a single quote.
+	 */
+	public RowTokenizer(String delimiter, boolean quoteAware) {
+		if (delimiter == null || delimiter.length() == 0) {
+			throw new IllegalArgumentException("Delimiter must not be empty");
+		}
+		this.delimiter = delimiter;
+		this.delimiterChar = delimiter.charAt(0);
+		this.quoteAware = quoteAware;
+	}
+
+	/**
+	 * Tokenizes a complete row.
+	 */
+	public void reset(CharSequence row) {
+		reset(row, 0, row.length());
+	}
+
+	/**
+	 * Tokenizes the characters between start (inclusive) and end (exclusive)
+	 * of the given sequence, so a row does not have to be copied out of a
+	 * larger buffer first.
+	 */
+	public void reset(CharSequence row, int start, int end) {
+		this.row = row;
+		numColumns = 0;
+		int pos = start;
+		while (true) {
+			if (quoteAware && pos < end && row.charAt(pos) == '"') {
+				int close = findClosingQuote(pos + 1, end);
+				addColumn(pos + 1, close, true);
+				// skip anything between the closing quote and the delimiter
+				pos = indexOfDelimiter(Math.min(close + 1, end), end);
+			} else {
+				int next = indexOfDelimiter(pos, end);
+				addColumn(pos, next, false);
+				pos = next;
+			}
+			if (pos >= end) {
+				break;
+			}
+			pos += delimiter.length();
+		}
+	}
+
+	/**
+	 * Number of columns in the current row. Empty trailing columns are not
+	 * counted, which matches the array length returned by
+	 * {@link String#split(String)}.
+	 */
+	public int getColumnCount() {
+		if (numColumns == 1) {
+			return 1;
+		}
+		int count = numColumns;
+		while (count > 0 && ends[count - 1] == starts[count - 1]) {
+			count--;
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the column is missing or has no content
+	 */
+	public boolean isEmpty(int col) {
+		return col >= numColumns || ends[col] == starts[col];
+	}
+
+	/**
+	 * Materializes a single column.
+	 *
+	 * @return the column content, or an empty string if the row has fewer
+	 *         columns
+	 */
+	public String getColumn(int col) {
+		if (isEmpty(col)) {
+			return "";
+		}
+		if (quoted[col]) {
+			StringBuilder builder = new StringBuilder(ends[col] - starts[col]);
+			appendColumn(builder, col);
+			return builder.toString();
+		}
+		return row.subSequence(starts[col], ends[col]).toString();
+	}
+
+	/**
+	 * Appends a column to the builder without creating an intermediate
+	 * {@link String}.
+	 */
+	public void appendColumn(StringBuilder builder, int col) {
+		if (isEmpty(col)) {
+			return;
+		}
+		if (quoted[col]) {
+			for (int i = starts[col]; i < ends[col]; i++) {
+				char c = row.charAt(i);
+				builder.append(c);
+				if (c == '"') {
+					// skip the second quote of an escaped pair
+					i++;
+				}
+			}
+		} else {
+			builder.append(row, starts[col], ends[col]);
+		}
+	}
+
+	private void addColumn(int start, int end, boolean isQuoted) {
+		if (numColumns == starts.length) {
+			int size = numColumns * 2;
+			int[] newStarts = new int[size];
+			int[] newEnds = new int[size];
+			boolean[] newQuoted = new boolean[size];
+			System.arraycopy(starts, 0, newStarts, 0, numColumns);
+			System.arraycopy(ends, 0, newEnds, 0, numColumns);
+			System.arraycopy(quoted, 0, newQuoted, 0, numColumns);
+			starts = newStarts;
+			ends = newEnds;
+			quoted = newQuoted;
+		}
+		starts[numColumns] = start;
+		ends[numColumns] = end;
+		quoted[numColumns] = isQuoted;
+		numColumns++;
+	}
+
+	private int indexOfDelimiter(int from, int end) {
+		int last = end - delimiter.length();
+		for (int i = from; i <= last; i++) {
+			if (row.charAt(i) == delimiterChar && matchesDelimiter(i)) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private boolean matchesDelimiter(int pos) {
+		for (int j = 1; j < delimiter.length(); j++) {
+			if (row.charAt(pos + j) != delimiter.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the position of the quote closing a quoted column, or end if
+	 *         the quote is never closed
+	 */
+	private int findClosingQuote(int from, int end) {
+		int i = from;
+		while (i < end) {
+			if (row.charAt(i) == '"') {
+				if (i + 1 < end && row.charAt(i + 1) == '"') {
+					i += 2;
+					continue;
+				}
+				return i;
+			}
+			i++;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,85 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.junit.Test;
+
+/**
+ * Checks that copies of an {@link AliasIndex}, which share the aliases of the
+ * original, do not change the original, also after they are merged.
+ *
+ * @author mku
+ */
+public class AliasIndexTest {
+
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final DataSource ENSEMBL = DataSource.getBySystemCode("En");
+
+	private static Xref node(int i) {
+		return new Xref(Integer.toString(i), ENTREZ);
+	}
+
+	private static Xref alias(int i) {
+		return new Xref("ENSG" + i, ENSEMBL);
+	}
+
+	@Test
+	public void testCopies() {
+		AliasIndex index = new AliasIndex();
+		for (int i = 0; i < 100; i++) {
+			index.register(node(i), Arrays.asList(node(i), alias(i)));
+		}
+		assertEquals(200, index.size());
+
+		// every copy adds a node, and an alias to an existing one
+		AliasIndex previous = index;
+		for (int copies = 1; copies <= 200; copies++) {
+			AliasIndex copy = new AliasIndex(previous);
+			int i = 100 + copies;
+			Xref alias = alias(copies % 100);
+			Set<Xref> before = previous.getNodes(alias);
+			copy.register(node(i), Arrays.asList(node(i), alias));
+			assertEquals(previous.size() + 1, copy.size());
+			Set<Xref> after = new HashSet<Xref>(before);
+			after.add(node(i));
+			assertEquals(after, copy.getNodes(alias));
+			assertEquals(before, previous.getNodes(alias));
+			previous = copy;
+		}
+
+		// the original is not changed
+		assertEquals(200, index.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Collections.singleton(node(i)), index.getNodes(alias(i)));
+		}
+		for (int i = 1; i <= 200; i++) {
+			assertEquals(Collections.singleton(node(100 + i)), previous.getNodes(node(100 + i)));
+		}
+		assertTrue(previous.getNodes(alias(500)).isEmpty());
+	}
+}
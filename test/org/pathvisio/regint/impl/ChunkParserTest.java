@@ -0,0 +1,132 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bridgedb.DataSource;
+import org.junit.Test;
+import org.pathvisio.regint.impl.util.FileChunk;
+import org.pathvisio.regint.impl.util.ImportInformation;
+import org.pathvisio.regint.impl.util.ImportPlan;
+
+/**
+ * Parses the same rows with every line end, from chunks of a file and of a
+ * stream.
+ *
+ * @author mku
+ */
+public class ChunkParserTest {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final int ROWS = 500;
+
+	private static ImportPlan createPlan(String lineEnd) throws IOException {
+		StringBuilder text = new StringBuilder("Regulator\tTarget\tPMID" + lineEnd);
+		for (int i = 0; i < ROWS; i++) {
+			text.append(i).append('\t').append(i + 1).append('\t').append(1000 + i).append(lineEnd);
+			if (i % 100 == 0) {
+				// skipped, too few columns
+				text.append("incomplete").append(lineEnd);
+			}
+		}
+		File file = File.createTempFile("regint", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.toString().getBytes(ASCII));
+		} finally {
+			out.close();
+		}
+
+		ImportInformation info = new ImportInformation();
+		info.setTxtFile(file);
+		info.setFirstDataRow(1);
+		info.setIdColumnReg(0);
+		info.setIdColumnTar(1);
+		info.setSyscodeFixedReg(true);
+		info.setSyscodeFixedTar(true);
+		info.setDataSourceReg(ENTREZ);
+		info.setDataSourceTar(ENTREZ);
+		info.setPMIDColumnEnabled(true);
+		info.setPMIDColumn(2);
+		return new ImportPlan(info);
+	}
+
+	private static void assertRows(List<InteractionRow> rows) {
+		assertEquals(ROWS, rows.size());
+		for (int i = 0; i < ROWS; i++) {
+			InteractionRow row = rows.get(i);
+			assertEquals(Integer.toString(i), row.getRegulator().getId());
+			assertEquals(Integer.toString(i + 1), row.getTarget().getId());
+			assertEquals(ENTREZ, row.getTarget().getDataSource());
+			assertEquals(Integer.toString(1000 + i), row.getPMID());
+		}
+	}
+
+	@Test
+	public void testFileChunks() throws Exception {
+		for (String lineEnd : new String[] { "\n", "\r\n", "\r" }) {
+			ImportPlan plan = createPlan(lineEnd);
+			FileInputStream in = new FileInputStream(plan.getFile());
+			try {
+				FileChannel channel = in.getChannel();
+				long dataStart = FileChunk.skipLines(channel, plan.getFirstDataRow());
+				List<InteractionRow> rows = new ArrayList<InteractionRow>();
+				for (FileChunk chunk : FileChunk.split(channel, dataStart, 50)) {
+					rows.addAll(new ChunkParser(plan, channel, chunk, ASCII).call());
+				}
+				assertRows(rows);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	@Test
+	public void testStreamChunks() throws Exception {
+		for (String lineEnd : new String[] { "\n", "\r\n", "\r" }) {
+			ImportPlan plan = createPlan(lineEnd);
+			PushbackInputStream in = new PushbackInputStream(new FileInputStream(plan.getFile()), 1);
+			try {
+				FileChunk.skipLines(in, plan.getFirstDataRow());
+				List<InteractionRow> rows = new ArrayList<InteractionRow>();
+				ByteBuffer chunk;
+				while ((chunk = FileChunk.read(in, 50)) != null) {
+					rows.addAll(new ChunkParser(plan, chunk, ASCII).call());
+				}
+				assertRows(rows);
+			} finally {
+				in.close();
+			}
+		}
+	}
+}
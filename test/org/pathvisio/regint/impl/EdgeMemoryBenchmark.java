@@ -0,0 +1,145 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+
+/**
+ * Measures the heap used per interaction by the {@link InteractionIndex}
+ * and by the map of {@link Interaction} lists it replaced. Both are built
+ * from the same random interactions between the same {@link Xref}s, which
+ * are created beforehand and so are not counted. Run with
+ * <code>ant benchmark</code>; the arguments are the number of interactions
+ * and of nodes, 1000000 and 100000 by default.
+ *
+ * @author mku
+ */
+public class EdgeMemoryBenchmark {
+
+	/**
+	 * The fields of an interaction in the old map, which kept one object
+	 * per interaction in the lists of both its regulator and its target.
+	 */
+	private static class MapInteraction {
+		private Xref regulator;
+		private Xref target;
+		private List<File> files = new ArrayList<File>();
+		private String PMID = "";
+		private String miscInfo = "";
+
+		MapInteraction(Xref regulator, Xref target, File file) {
+			this.regulator = regulator;
+			this.target = target;
+			files.add(file);
+		}
+	}
+
+	public static void main(String[] args) {
+		int edges = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int nodeCount = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		DataSource ds = DataSource.getBySystemCode("L");
+		Xref[] nodes = new Xref[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			nodes[i] = new Xref(Integer.toString(i), ds);
+		}
+		int[] regulators = new int[edges];
+		int[] targets = new int[edges];
+		Random random = new Random(42);
+		for (int i = 0; i < edges; i++) {
+			regulators[i] = random.nextInt(nodeCount);
+			targets[i] = random.nextInt(nodeCount);
+		}
+		File file = new File("interactions.txt");
+
+		long before = usedMemory();
+		Map<Xref, List<MapInteraction>> map = buildMap(nodes, regulators, targets, file);
+		long mapBytes = usedMemory() - before;
+		int mapSize = map.size();
+		map = null;
+
+		before = usedMemory();
+		InteractionIndex index = buildIndex(nodes, regulators, targets, file);
+		long indexBytes = usedMemory() - before;
+
+		System.out.println("Interactions: " + index.getEdgeCount() + ", nodes: " + mapSize);
+		System.out.println("Map of interaction lists: " + mapBytes / index.getEdgeCount() + " bytes per interaction");
+		System.out.println("Interaction index: " + indexBytes / index.getEdgeCount() + " bytes per interaction");
+	}
+
+	private static Map<Xref, List<MapInteraction>> buildMap(Xref[] nodes, int[] regulators, int[] targets,
+			File file) {
+		Map<Xref, List<MapInteraction>> map = new HashMap<Xref, List<MapInteraction>>();
+		Map<Long, MapInteraction> existing = new HashMap<Long, MapInteraction>();
+		for (int i = 0; i < regulators.length; i++) {
+			Long key = (long) regulators[i] << 32 | targets[i];
+			if (existing.containsKey(key)) {
+				continue;
+			}
+			Xref regulator = nodes[regulators[i]];
+			Xref target = nodes[targets[i]];
+			MapInteraction interaction = new MapInteraction(regulator, target, file);
+			existing.put(key, interaction);
+			add(map, regulator, interaction);
+			if (!target.equals(regulator)) {
+				add(map, target, interaction);
+			}
+		}
+		// only used to find duplicates while building
+		existing.clear();
+		return map;
+	}
+
+	private static void add(Map<Xref, List<MapInteraction>> map, Xref xref, MapInteraction interaction) {
+		List<MapInteraction> list = map.get(xref);
+		if (list == null) {
+			list = new ArrayList<MapInteraction>();
+			map.put(xref, list);
+		}
+		list.add(interaction);
+	}
+
+	private static InteractionIndex buildIndex(Xref[] nodes, int[] regulators, int[] targets, File file) {
+		InteractionIndex index = new InteractionIndex();
+		int id = index.addFile(file, new String[0]);
+		List<Xref> none = Collections.emptyList();
+		for (int i = 0; i < regulators.length; i++) {
+			InteractionRow row = new InteractionRow(nodes[regulators[i]], nodes[targets[i]]);
+			index.addInteraction(row, id, none, none);
+		}
+		index.compact();
+		return index;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,256 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pathvisio.regint.impl.util.FileChunk;
+import org.pathvisio.regint.impl.util.ImportInformation;
+import org.pathvisio.regint.impl.util.ImportPlan;
+
+/**
+ * Writes and reads snapshots of parsed files, and checks they are only used
+ * for the file state that was parsed.
+ *
+ * @author mku
+ */
+public class IndexSnapshotTest {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final DataSource ENSEMBL = DataSource.getBySystemCode("En");
+	private static final String GDB = "test.bridge";
+	private static final int ROWS = 200;
+
+	private File dir;
+	private List<File> files = new ArrayList<File>();
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("regint", "-snapshots");
+		assertTrue(dir.delete());
+	}
+
+	@After
+	public void tearDown() {
+		File[] snapshots = dir.listFiles();
+		if (snapshots != null) {
+			for (File snapshot : snapshots) {
+				snapshot.delete();
+			}
+		}
+		dir.delete();
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private ImportPlan createPlan() throws IOException {
+		File file = File.createTempFile("regint", ".txt");
+		files.add(file);
+		StringBuilder text = new StringBuilder("Regulator\tTarget\tPMID\n");
+		for (int i = 0; i < ROWS; i++) {
+			text.append(i).append('\t').append(i + 1).append('\t').append(1000 + i).append('\n');
+		}
+		write(file, text.toString(), false);
+
+		ImportInformation info = new ImportInformation();
+		info.setTxtFile(file);
+		info.setFirstDataRow(1);
+		info.setIdColumnReg(0);
+		info.setIdColumnTar(1);
+		info.setSyscodeFixedReg(true);
+		info.setSyscodeFixedTar(true);
+		info.setDataSourceReg(ENTREZ);
+		info.setDataSourceTar(ENTREZ);
+		info.setPMIDColumnEnabled(true);
+		info.setPMIDColumn(2);
+		return new ImportPlan(info);
+	}
+
+	private static void write(File file, String text, boolean append) throws IOException {
+		FileOutputStream out = new FileOutputStream(file, append);
+		try {
+			out.write(text.getBytes(ASCII));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Parses the file in chunks and records its state the way the
+	 * {@link InteractionMapBuilder} does.
+	 */
+	private static PartialIndex parse(ImportPlan plan) throws Exception {
+		PartialIndex partial = new PartialIndex(plan.getFile(), plan.getMiscColumnNames());
+		FileInputStream in = new FileInputStream(plan.getFile());
+		try {
+			FileChannel channel = in.getChannel();
+			long dataStart = FileChunk.skipLines(channel, plan.getFirstDataRow());
+			long checksum = FileChunk.checksum(new FileChunk(-1, 0, dataStart).read(channel));
+			for (FileChunk chunk : FileChunk.split(channel, dataStart, 64)) {
+				ChunkParser parser = new ChunkParser(plan, channel, chunk, ASCII);
+				for (InteractionRow row : parser.call()) {
+					partial.add(row);
+				}
+				checksum = FileChunk.combineChecksums(checksum, parser.getChecksum(), chunk.getLength());
+			}
+			partial.setFileState(plan.getFile().length(), plan.getFile().lastModified(), checksum);
+		} finally {
+			in.close();
+		}
+		return partial;
+	}
+
+	private static Map<Xref, Set<Xref>> map(PartialIndex partial) {
+		Map<Xref, Set<Xref>> mapped = new HashMap<Xref, Set<Xref>>();
+		for (InteractionRow row : partial.getInteractions()) {
+			for (Xref xref : new Xref[] { row.getRegulator(), row.getTarget() }) {
+				mapped.put(xref, Collections.singleton(new Xref("ENSG" + xref.getId(), ENSEMBL)));
+			}
+		}
+		return mapped;
+	}
+
+	private static long crc(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	private static Set<String> rows(PartialIndex partial) {
+		Set<String> rows = new HashSet<String>();
+		for (InteractionRow row : partial.getInteractions()) {
+			rows.add(row.getRegulator() + ">" + row.getTarget() + ":" + row.getPMID());
+		}
+		return rows;
+	}
+
+	@Test
+	public void testChunkChecksums() throws Exception {
+		ImportPlan plan = createPlan();
+		assertEquals(crc(plan.getFile()), parse(plan).getFileChecksum());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		ImportPlan plan = createPlan();
+		PartialIndex partial = parse(plan);
+		Map<Xref, Set<Xref>> mapped = map(partial);
+		IndexSnapshot.write(partial, plan, mapped, GDB, dir);
+
+		PartialIndex read = IndexSnapshot.read(plan, GDB, dir);
+		assertNotNull(read);
+		assertEquals(ROWS, read.size());
+		assertEquals(rows(partial), rows(read));
+		assertEquals(mapped, read.getMappings());
+		assertEquals(partial.getFileChecksum(), read.getFileChecksum());
+
+		// another gene database, only the rows are used
+		read = IndexSnapshot.read(plan, "other.bridge", dir);
+		assertNotNull(read);
+		assertEquals(rows(partial), rows(read));
+		assertNull(read.getMappings());
+	}
+
+	@Test
+	public void testChangedFile() throws Exception {
+		ImportPlan plan = createPlan();
+		PartialIndex partial = parse(plan);
+		IndexSnapshot.write(partial, plan, map(partial), GDB, dir);
+		File snapshot = IndexSnapshot.getSnapshotFile(dir, plan.getFile());
+		assertTrue(snapshot.exists());
+
+		write(plan.getFile(), "1\t2\t3\n", true);
+		assertNull(IndexSnapshot.read(plan, GDB, dir));
+		assertFalse(snapshot.exists());
+	}
+
+	@Test
+	public void testChangedWhileParsing() throws Exception {
+		ImportPlan plan = createPlan();
+		PartialIndex partial = parse(plan);
+		IndexSnapshot.write(partial, plan, map(partial), GDB, dir);
+		File snapshot = IndexSnapshot.getSnapshotFile(dir, plan.getFile());
+
+		// the parsed state is older than the file, the old snapshot is
+		// removed instead of being replaced
+		PartialIndex changed = parse(plan);
+		write(plan.getFile(), "1\t2\t3\n", true);
+		assertTrue(plan.getFile().setLastModified(changed.getFileModified() + 2000));
+		IndexSnapshot.write(changed, plan, map(changed), GDB, dir);
+		assertFalse(snapshot.exists());
+
+		// without a file state nothing is written
+		PartialIndex unknown = new PartialIndex(plan.getFile(), plan.getMiscColumnNames());
+		IndexSnapshot.write(unknown, plan, map(unknown), GDB, dir);
+		assertFalse(snapshot.exists());
+	}
+
+	@Test
+	public void testStaleSnapshots() throws Exception {
+		ImportPlan removed = createPlan();
+		PartialIndex partial = parse(removed);
+		IndexSnapshot.write(partial, removed, map(partial), GDB, dir);
+		File snapshot = IndexSnapshot.getSnapshotFile(dir, removed.getFile());
+		assertTrue(snapshot.exists());
+		File temp = new File(dir, "left.snapshot.tmp");
+		write(temp, "interrupted", false);
+
+		assertTrue(removed.getFile().delete());
+		ImportPlan plan = createPlan();
+		partial = parse(plan);
+		IndexSnapshot.write(partial, plan, map(partial), GDB, dir);
+		assertFalse(snapshot.exists());
+		assertFalse(temp.exists());
+		assertTrue(IndexSnapshot.getSnapshotFile(dir, plan.getFile()).exists());
+	}
+}
@@ -0,0 +1,216 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.junit.Test;
+
+/**
+ * Tests the file sets of interactions around 64 files, where the file ids
+ * move from the mask of an interaction to its overflow {@link java.util.BitSet},
+ * and importing a file again.
+ *
+ * @author mku
+ */
+public class InteractionIndexTest {
+
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final Xref REGULATOR = new Xref("1", ENTREZ);
+	private static final Xref TARGET = new Xref("2", ENTREZ);
+	private static final List<Xref> NONE = Collections.emptyList();
+
+	/**
+	 * Creates an index with the given number of files, that all contain the
+	 * interaction between REGULATOR and TARGET.
+	 */
+	private static InteractionIndex createIndex(List<File> files) {
+		InteractionIndex index = new InteractionIndex();
+		for (File file : files) {
+			int id = index.addFile(file, new String[0]);
+			index.addInteraction(new InteractionRow(REGULATOR, TARGET), id, NONE, NONE);
+		}
+		index.compact();
+		return index;
+	}
+
+	private static List<File> createFiles(int count) {
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			files.add(new File("interactions" + i + ".txt"));
+		}
+		return files;
+	}
+
+	private static Interaction getInteraction(InteractionIndex index, FileSelection selection) {
+		List<Interaction> targets = index.getTargets(REGULATOR, selection);
+		assertEquals(1, targets.size());
+		return targets.get(0);
+	}
+
+	@Test
+	public void testFileBoundary() {
+		for (int count : new int[] { 63, 64, 65, 130 }) {
+			List<File> files = createFiles(count);
+			InteractionIndex index = createIndex(files);
+			FileSelection all = index.getFileSelection(files);
+			assertTrue(all.isAllFiles());
+			assertEquals(count, all.size());
+			Interaction interaction = getInteraction(index, all);
+			assertEquals(count, interaction.countFiles(all));
+			assertEquals(files, interaction.getFiles());
+		}
+	}
+
+	@Test
+	public void testSelectionAroundBoundary() {
+		List<File> files = createFiles(66);
+		InteractionIndex index = createIndex(files);
+		for (int file : new int[] { 0, 62, 63, 64, 65 }) {
+			FileSelection selection = index.getFileSelection(Collections.singleton(files.get(file)));
+			assertFalse(selection.isAllFiles());
+			assertEquals(1, selection.size());
+			Interaction interaction = getInteraction(index, selection);
+			assertEquals(1, interaction.countFiles(selection));
+			assertEquals(Collections.singletonList(files.get(file)), interaction.getFiles(selection));
+		}
+
+		List<File> selected = Arrays.asList(files.get(63), files.get(64), files.get(65));
+		FileSelection selection = index.getFileSelection(selected);
+		assertEquals(3, selection.size());
+		Interaction interaction = getInteraction(index, selection);
+		assertEquals(3, interaction.countFiles(selection));
+		assertEquals(selected, interaction.getFiles(selection));
+	}
+
+	@Test
+	public void testOnlyInOverflowFiles() {
+		List<File> files = createFiles(66);
+		InteractionIndex index = new InteractionIndex();
+		Xref other = new Xref("3", ENTREZ);
+		for (File file : files) {
+			int id = index.addFile(file, new String[0]);
+			if (id >= 64) {
+				index.addInteraction(new InteractionRow(REGULATOR, other), id, NONE, NONE);
+			} else {
+				index.addInteraction(new InteractionRow(REGULATOR, TARGET), id, NONE, NONE);
+			}
+		}
+		index.compact();
+
+		FileSelection low = index.getFileSelection(files.subList(0, 64));
+		List<Interaction> targets = index.getTargets(REGULATOR, low);
+		assertEquals(1, targets.size());
+		assertEquals(TARGET, targets.get(0).getTarget());
+		assertEquals(64, targets.get(0).countFiles(low));
+
+		FileSelection high = index.getFileSelection(files.subList(64, 66));
+		targets = index.getTargets(REGULATOR, high);
+		assertEquals(1, targets.size());
+		assertEquals(other, targets.get(0).getTarget());
+		assertEquals(2, targets.get(0).countFiles(high));
+	}
+
+	@Test
+	public void testJoinedEdgesAcrossBoundary() {
+		List<File> files = createFiles(66);
+		Xref alias = new Xref("ENSG2", DataSource.getBySystemCode("En"));
+		InteractionIndex index = new InteractionIndex();
+		for (File file : files) {
+			int id = index.addFile(file, new String[0]);
+			// the files from 64 on use another identifier for the target,
+			// which is joined with the first one by the last file
+			Xref target = id < 64 ? TARGET : alias;
+			List<Xref> equivalents = id == 65 ? Collections.singletonList(TARGET) : NONE;
+			index.addInteraction(new InteractionRow(REGULATOR, target), id, NONE, equivalents);
+		}
+		index.compact();
+
+		FileSelection all = index.getFileSelection(files);
+		Interaction interaction = getInteraction(index, all);
+		assertEquals(66, interaction.countFiles(all));
+		assertEquals(files, interaction.getFiles());
+		FileSelection selection = index.getFileSelection(Arrays.asList(files.get(0), files.get(64)));
+		assertEquals(2, getInteraction(index, selection).countFiles(selection));
+	}
+
+	private static InteractionRow createRow(Xref regulator, Xref target, String misc) {
+		InteractionRow row = new InteractionRow(regulator, target);
+		row.setMiscValues(misc);
+		return row;
+	}
+
+	@Test
+	public void testReimportReplacesInteractions() {
+		File file = new File("interactions.txt");
+		File other = new File("other.txt");
+		Xref removed = new Xref("3", ENTREZ);
+		InteractionIndex index = new InteractionIndex();
+		int id = index.addFile(file, new String[] { "score" });
+		index.addInteraction(createRow(REGULATOR, TARGET, "1"), id, NONE, NONE);
+		index.addInteraction(createRow(REGULATOR, removed, "2"), id, NONE, NONE);
+		int otherId = index.addFile(other, new String[0]);
+		index.addInteraction(createRow(REGULATOR, removed, ""), otherId, NONE, NONE);
+		index.compact();
+		index.publish();
+
+		// the file now has other columns and no longer has the second row
+		InteractionIndex copy = index.copy();
+		assertEquals(id, copy.addFile(file, new String[] { "weight" }));
+		copy.addInteraction(createRow(REGULATOR, TARGET, "0.5"), id, NONE, NONE);
+		copy.compact();
+
+		FileSelection all = copy.getFileSelection(Arrays.asList(file, other));
+		List<Interaction> targets = copy.getTargets(REGULATOR, all);
+		assertEquals(2, targets.size());
+		for (Interaction interaction : targets) {
+			if (interaction.getTarget().equals(TARGET)) {
+				assertEquals(Collections.singletonList(file), interaction.getFiles());
+				assertEquals("<table border=\"1\"><tr><td>weight</td><td>0.5</td></tr></table>",
+						interaction.getMiscInfo());
+			} else {
+				// only left in the other file, without the old misc values
+				assertEquals(Collections.singletonList(other), interaction.getFiles());
+				assertEquals(1, interaction.countFiles(all));
+				assertEquals("", interaction.getMiscInfo());
+			}
+		}
+		assertEquals(1, copy.getTargets(REGULATOR, copy.getFileSelection(Collections.singleton(file))).size());
+
+		// the published index is not changed
+		targets = index.getTargets(REGULATOR, index.getFileSelection(Collections.singleton(file)));
+		assertEquals(2, targets.size());
+		for (Interaction interaction : targets) {
+			if (interaction.getTarget().equals(TARGET)) {
+				assertEquals("<table border=\"1\"><tr><td>score</td><td>1</td></tr></table>",
+						interaction.getMiscInfo());
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.junit.Test;
+
+/**
+ * Compares the partners of a {@link PartnerRanking} with a full sort, for
+ * partners inside and after the first k.
+ *
+ * @author mku
+ */
+public class PartnerRankingTest {
+
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final Xref REGULATOR = new Xref("regulator", ENTREZ);
+	private static final int PARTNERS = 200;
+	private static final int FILES = 6;
+
+	private final List<File> files = new ArrayList<File>();
+	private final InteractionIndex index = new InteractionIndex();
+
+	public PartnerRankingTest() {
+		List<Xref> none = Collections.emptyList();
+		Random random = new Random(7);
+		for (int file = 0; file < FILES; file++) {
+			files.add(new File("interactions" + file + ".txt"));
+			index.addFile(files.get(file), new String[0]);
+		}
+		for (int i = 0; i < PARTNERS; i++) {
+			// mixed case ids, so the order depends on ignoring the case
+			Xref target = new Xref((i % 2 == 0 ? "g" : "G") + random.nextInt(1000) + "-" + i, ENTREZ);
+			int fileCount = 1 + random.nextInt(FILES);
+			for (int file = 0; file < fileCount; file++) {
+				index.addInteraction(new InteractionRow(REGULATOR, target), file, none, none);
+			}
+		}
+		index.compact();
+	}
+
+	private Map<Xref, Interaction> getTargets(FileSelection selection) {
+		Map<Xref, Interaction> targets = new HashMap<Xref, Interaction>();
+		for (Interaction interaction : index.getTargets(REGULATOR, selection)) {
+			targets.put(interaction.getTarget(), interaction);
+		}
+		return targets;
+	}
+
+	private static List<Xref> sort(final Map<Xref, Interaction> targets, final FileSelection selection,
+			final boolean byFiles) {
+		List<Xref> sorted = new ArrayList<Xref>(targets.keySet());
+		Collections.sort(sorted, new Comparator<Xref>() {
+			public int compare(Xref a, Xref b) {
+				if (byFiles) {
+					int countA = targets.get(a).countFiles(selection);
+					int countB = targets.get(b).countFiles(selection);
+					if (countA != countB) {
+						return countB - countA;
+					}
+				}
+				int byLabel = a.toString().compareToIgnoreCase(b.toString());
+				return byLabel != 0 ? byLabel : a.compareTo(b);
+			}
+		});
+		return sorted;
+	}
+
+	private void assertRanking(FileSelection selection, boolean byFiles) {
+		Map<Xref, Interaction> targets = getTargets(selection);
+		List<Xref> expected = sort(targets, selection, byFiles);
+		AttributeCache attributeCache = new AttributeCache(null);
+		for (int k : new int[] { 0, 1, 10, expected.size(), expected.size() + 10 }) {
+			PartnerRanking ranking = new PartnerRanking(targets, selection, attributeCache, byFiles, k);
+			assertEquals(expected.size(), ranking.size());
+			// every partner, so the partners after the first k are ranked too
+			assertEquals(expected, new ArrayList<Xref>(ranking));
+		}
+	}
+
+	@Test
+	public void testByFiles() {
+		assertRanking(index.getFileSelection(files), true);
+	}
+
+	@Test
+	public void testByFilesOfSelection() {
+		assertRanking(index.getFileSelection(files.subList(2, 4)), true);
+	}
+
+	@Test
+	public void testAlphabetical() {
+		assertRanking(index.getFileSelection(files), false);
+	}
+
+	@Test
+	public void testEmpty() {
+		Map<Xref, Interaction> none = Collections.emptyMap();
+		PartnerRanking ranking = new PartnerRanking(none, index.getFileSelection(files),
+				new AttributeCache(null), true, 10);
+		assertEquals(0, ranking.size());
+	}
+}
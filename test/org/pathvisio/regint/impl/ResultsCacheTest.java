@@ -0,0 +1,94 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.junit.Test;
+
+/**
+ * @author mku
+ */
+public class ResultsCacheTest {
+
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final Xref XREF = new Xref("1", ENTREZ);
+
+	@Test
+	public void testPutAndGet() {
+		ResultsCache cache = new ResultsCache();
+		assertSame(ResultsCache.NOT_CACHED, cache.get(XREF));
+		ResultsObj results = new ResultsObj(XREF);
+		cache.put(XREF, results, cache.getGeneration());
+		assertSame(results, cache.get(XREF));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testNoResults() {
+		ResultsCache cache = new ResultsCache();
+		cache.put(XREF, null, cache.getGeneration());
+		assertNull(cache.get(XREF));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testInvalidate() {
+		ResultsCache cache = new ResultsCache();
+		cache.put(XREF, new ResultsObj(XREF), cache.getGeneration());
+		long generation = cache.getGeneration();
+		cache.invalidate();
+		assertEquals(generation + 1, cache.getGeneration());
+		assertSame(ResultsCache.NOT_CACHED, cache.get(XREF));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testOutdatedResultsAreNotStored() {
+		ResultsCache cache = new ResultsCache();
+		// a query that started before the files changed
+		long generation = cache.getGeneration();
+		cache.invalidate();
+		cache.put(XREF, new ResultsObj(XREF), generation);
+		assertSame(ResultsCache.NOT_CACHED, cache.get(XREF));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		ResultsCache cache = new ResultsCache(2);
+		Xref second = new Xref("2", ENTREZ);
+		Xref third = new Xref("3", ENTREZ);
+		cache.put(XREF, new ResultsObj(XREF), 0);
+		cache.put(second, new ResultsObj(second), 0);
+		// the first is used again, so the second is the least recently used
+		cache.get(XREF);
+		cache.put(third, new ResultsObj(third), 0);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertSame(ResultsCache.NOT_CACHED, cache.get(second));
+		assertEquals(XREF, cache.get(XREF).getSelectedXref());
+		assertEquals(third, cache.get(third).getSelectedXref());
+	}
+}
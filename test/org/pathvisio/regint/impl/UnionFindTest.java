@@ -0,0 +1,91 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author mku
+ */
+public class UnionFindTest {
+
+	private static UnionFind create(int size) {
+		UnionFind sets = new UnionFind();
+		for (int i = 0; i < size; i++) {
+			assertEquals(i, sets.add());
+		}
+		return sets;
+	}
+
+	@Test
+	public void testSingletons() {
+		UnionFind sets = create(3);
+		assertEquals(3, sets.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, sets.find(i));
+			assertEquals(i, sets.getRoot(i));
+		}
+	}
+
+	@Test
+	public void testUnionByLowestId() {
+		UnionFind sets = create(6);
+		assertEquals(2, sets.union(5, 2));
+		assertEquals(2, sets.union(2, 4));
+		assertEquals(1, sets.union(4, 1));
+		for (int id : new int[] { 1, 2, 4, 5 }) {
+			assertEquals(1, sets.find(id));
+		}
+		assertEquals(0, sets.find(0));
+		assertEquals(3, sets.find(3));
+		// joining two groups keeps the lowest representative of both
+		assertEquals(3, sets.union(3, 3));
+		assertEquals(0, sets.union(5, 0));
+		assertEquals(0, sets.find(2));
+		assertEquals(0, sets.union(0, 5));
+	}
+
+	@Test
+	public void testGrowAndFlatten() {
+		int size = 5000;
+		UnionFind sets = create(size);
+		// a long chain, every element joined with the one after it
+		for (int i = size - 1; i > 0; i--) {
+			sets.union(i, i - 1);
+		}
+		sets.flatten();
+		for (int i = 0; i < size; i++) {
+			assertEquals(0, sets.getRoot(i));
+		}
+	}
+
+	@Test
+	public void testCopy() {
+		UnionFind sets = create(4);
+		sets.union(0, 1);
+		UnionFind copy = new UnionFind(sets);
+		copy.union(1, 3);
+		assertEquals(4, copy.add());
+		assertEquals(0, copy.find(3));
+		assertEquals(3, sets.find(3));
+		assertEquals(4, sets.size());
+	}
+}
@@ -0,0 +1,172 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperStack;
+import org.bridgedb.Xref;
+import org.junit.Test;
+import org.pathvisio.core.data.GdbManager;
+
+/**
+ * Tests the {@link XrefMappingCache} with a gene database that maps every
+ * Entrez Gene id to an Ensembl id, and counts the mapped Xrefs.
+ *
+ * @author mku
+ */
+public class XrefMappingCacheTest {
+
+	private static final DataSource ENTREZ = DataSource.getBySystemCode("L");
+	private static final DataSource ENSEMBL = DataSource.getBySystemCode("En");
+	private static final DataSource[] ALL = new DataSource[0];
+
+	private final List<Xref> queried = new ArrayList<Xref>();
+	// called while mapping, to change the gene database during a mapping
+	private Runnable onMap;
+
+	private final IDMapper mapper = (IDMapper) Proxy.newProxyInstance(IDMapper.class.getClassLoader(),
+			new Class<?>[] { IDMapper.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (!method.getName().equals("mapID") || !(args[0] instanceof Collection)) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+					for (Object xref : (Collection<?>) args[0]) {
+						queried.add((Xref) xref);
+						Xref ensembl = new Xref("ENSG" + ((Xref) xref).getId(), ENSEMBL);
+						result.put((Xref) xref, new HashSet<Xref>(Collections.singleton(ensembl)));
+					}
+					if (onMap != null) {
+						onMap.run();
+					}
+					return result;
+				}
+			});
+
+	private final GdbManager gdbManager = new GdbManager() {
+		@Override
+		public IDMapperStack getCurrentGdb() {
+			return new IDMapperStack() {
+				@Override
+				public List<IDMapper> getMappers() {
+					return Collections.singletonList(mapper);
+				}
+			};
+		}
+	};
+
+	private static List<Xref> createXrefs(int count) {
+		List<Xref> xrefs = new ArrayList<Xref>();
+		for (int i = 0; i < count; i++) {
+			xrefs.add(new Xref(Integer.toString(i), ENTREZ));
+		}
+		return xrefs;
+	}
+
+	@Test
+	public void testMappedOnce() throws Exception {
+		XrefMappingCache cache = new XrefMappingCache(gdbManager);
+		List<Xref> xrefs = createXrefs(10);
+		Map<Xref, Set<Xref>> mapped = cache.mapAll(xrefs, ALL, 3);
+		assertEquals(10, mapped.size());
+		Xref first = xrefs.get(0);
+		assertEquals(new HashSet<Xref>(Arrays.asList(first, new Xref("ENSG0", ENSEMBL))), mapped.get(first));
+		assertEquals(10, queried.size());
+		assertEquals(10, cache.getMisses());
+
+		// the second time from the cache, also for a single Xref
+		assertEquals(mapped, cache.mapAll(xrefs, ALL, 3));
+		assertEquals(mapped.get(first), cache.mapID(first));
+		assertEquals(10, queried.size());
+		assertEquals(11, cache.getHits());
+	}
+
+	@Test
+	public void testTargetsAreCachedSeparately() throws Exception {
+		XrefMappingCache cache = new XrefMappingCache(gdbManager);
+		Xref xref = createXrefs(1).get(0);
+		cache.mapID(xref);
+		cache.mapID(xref, ENSEMBL);
+		cache.mapID(xref, ENSEMBL);
+		assertEquals(2, queried.size());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		XrefMappingCache cache = new XrefMappingCache(gdbManager);
+		List<Xref> xrefs = createXrefs(5);
+		cache.mapAll(xrefs, ALL, 100);
+		cache.clear();
+		assertEquals(0, cache.size());
+		cache.mapAll(xrefs, ALL, 100);
+		assertEquals(10, queried.size());
+	}
+
+	@Test
+	public void testMappingDuringClearIsNotStored() throws Exception {
+		final XrefMappingCache cache = new XrefMappingCache(gdbManager);
+		List<Xref> xrefs = createXrefs(5);
+		// the gene database changes while the first batch is mapped
+		onMap = new Runnable() {
+			public void run() {
+				onMap = null;
+				cache.clear();
+			}
+		};
+		Map<Xref, Set<Xref>> mapped = cache.mapAll(xrefs, ALL, 100);
+		assertEquals(5, mapped.size());
+		assertEquals(0, cache.size());
+		cache.mapAll(xrefs, ALL, 100);
+		assertEquals(10, queried.size());
+		assertEquals(5, cache.size());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		XrefMappingCache cache = new XrefMappingCache(gdbManager, 3);
+		List<Xref> xrefs = createXrefs(5);
+		for (Xref xref : xrefs) {
+			cache.mapID(xref);
+		}
+		assertEquals(3, cache.size());
+		// the last three are still cached
+		cache.mapAll(xrefs.subList(2, 5), ALL, 100);
+		assertEquals(5, queried.size());
+		assertEquals(3, cache.getHits());
+		cache.mapID(xrefs.get(0));
+		assertEquals(6, queried.size());
+	}
+}
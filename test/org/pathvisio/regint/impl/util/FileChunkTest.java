@@ -0,0 +1,145 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests splitting files and streams into chunks at "\n", "\r\n" and lone
+ * "\r" line ends.
+ *
+ * @author mku
+ */
+public class FileChunkTest {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final String[] LINE_ENDS = { "\n", "\r\n", "\r" };
+
+	private static String createText(String lineEnd, int rows) {
+		StringBuilder text = new StringBuilder("regulator\ttarget" + lineEnd);
+		for (int i = 0; i < rows; i++) {
+			text.append("R").append(i).append("\tT").append(i % 7).append(lineEnd);
+		}
+		return text.toString();
+	}
+
+	private static File write(String text) throws IOException {
+		File file = File.createTempFile("regint", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes(ASCII));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static PushbackInputStream stream(String text) {
+		return new PushbackInputStream(new ByteArrayInputStream(text.getBytes(ASCII)), 1);
+	}
+
+	private static boolean endsWithLineEnd(String chunk) {
+		return chunk.endsWith("\n") || chunk.endsWith("\r");
+	}
+
+	@Test
+	public void testSplitFile() throws IOException {
+		for (String lineEnd : LINE_ENDS) {
+			String text = createText(lineEnd, 1000);
+			File file = write(text);
+			FileInputStream in = new FileInputStream(file);
+			try {
+				FileChannel channel = in.getChannel();
+				long dataStart = FileChunk.skipLines(channel, 1);
+				assertEquals(("regulator\ttarget" + lineEnd).length(), dataStart);
+				// small chunks, so many boundaries fall inside a "\r\n"
+				List<FileChunk> chunks = FileChunk.split(channel, dataStart, 7);
+				StringBuilder joined = new StringBuilder();
+				for (FileChunk chunk : chunks) {
+					String decoded = FileChunk.decode(chunk.read(channel), ASCII).toString();
+					assertTrue(endsWithLineEnd(decoded));
+					assertTrue(!decoded.startsWith("\n"));
+					joined.append(decoded);
+				}
+				assertEquals(text.substring((int) dataStart), joined.toString());
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	@Test
+	public void testReadStream() throws IOException {
+		for (String lineEnd : LINE_ENDS) {
+			String text = createText(lineEnd, 1000);
+			PushbackInputStream in = stream(text);
+			long skipped = FileChunk.skipLines(in, 1);
+			assertEquals(("regulator\ttarget" + lineEnd).length(), skipped);
+			StringBuilder joined = new StringBuilder();
+			ByteBuffer chunk;
+			while ((chunk = FileChunk.read(in, 7)) != null) {
+				String decoded = FileChunk.decode(chunk, ASCII).toString();
+				assertTrue(endsWithLineEnd(decoded));
+				assertTrue(!decoded.startsWith("\n"));
+				joined.append(decoded);
+			}
+			assertEquals(text.substring((int) skipped), joined.toString());
+		}
+	}
+
+	@Test
+	public void testCrLfAtEndOfBuffer() throws IOException {
+		// the chunk buffer holds the chunk size and 64 kB to finish the last
+		// line; a '\r' in its last byte is followed by a '\n'
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < 64 * 1024 + 3; i++) {
+			line.append('x');
+		}
+		String text = line + "\r\nnext\r\n";
+		PushbackInputStream in = stream(text);
+		ByteBuffer chunk = FileChunk.read(in, 4);
+		assertEquals(line + "\r\n", FileChunk.decode(chunk, ASCII).toString());
+		assertEquals("next\r\n", FileChunk.decode(FileChunk.read(in, 4), ASCII).toString());
+		assertNull(FileChunk.read(in, 4));
+	}
+
+	@Test
+	public void testLoneCarriageReturnAtEnd() throws IOException {
+		PushbackInputStream in = stream("a\rb\r");
+		assertEquals("a\r", FileChunk.decode(FileChunk.read(in, 1), ASCII).toString());
+		assertEquals("b\r", FileChunk.decode(FileChunk.read(in, 1), ASCII).toString());
+		assertNull(FileChunk.read(in, 1));
+	}
+}
@@ -0,0 +1,161 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bridgedb.DataSource;
+import org.junit.Test;
+
+/**
+ * Compares the PubMed IDs and misc tables of an {@link ImportPlan} with the
+ * parser it replaced, which split every row with {@link String#split(String)}
+ * and built the misc table from the column settings of the
+ * {@link ImportInformation}.
+ *
+ * @author mku
+ */
+public class ImportPlanTest {
+
+	private static final String[] LINES = { "SysReg\tRegulator\tSysTar\tTarget\tPMID\tScore\tNote",
+			"L\t1\tL\t2\t111\t0.5\tbinds", "L\t3\tEn\tENSG4\t\t0.7\tinhibits", "L\t5\tL\t6\t222\t\tactivates",
+			"L\t7\tL\t8\t333\t0.1\t", "L\t9\tL\t10", "L\t11\tL\t12\t444\t0.9\tx" };
+
+	private static ImportInformation createInformation() throws IOException {
+		File file = File.createTempFile("regint", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			for (String line : LINES) {
+				out.write((line + "\n").getBytes("US-ASCII"));
+			}
+		} finally {
+			out.close();
+		}
+		ImportInformation info = new ImportInformation();
+		info.setTxtFile(file);
+		info.setFirstDataRow(1);
+		info.setIdColumnReg(1);
+		info.setIdColumnTar(3);
+		info.setSyscodeFixedReg(false);
+		info.setSysodeColumnReg(0);
+		info.setSyscodeFixedTar(false);
+		info.setSysodeColumnTar(2);
+		info.setStringColumn(6, true);
+		return info;
+	}
+
+	/**
+	 * The misc table as the old parser built it, or null if it skipped the
+	 * row.
+	 */
+	private static String parseMiscInfo(ImportInformation info, String line) {
+		String[] str = line.split(info.getDelimiter());
+		if (str.length < info.getSampleMaxNumCols()) {
+			return null;
+		}
+		String miscInfo = "<table border=\"1\">";
+		for (int i = 0; i < info.getColNames().length; i++) {
+			if (i != info.getIdColumnReg() && i != info.getIdColumnTar()) {
+				if (!info.isSyscodeFixedReg() && i == info.getSyscodeColumnReg()) {
+					// do nothing
+				} else if (!info.isSyscodeFixedTar() && i == info.getSyscodeColumnTar()) {
+					// do nothing
+				} else if (info.isPMIDColumnEnabled() && i == info.getPMIDColumn()) {
+					// do nothing
+				} else {
+					miscInfo += "<tr><td>" + info.getColNames()[i] + "</td><td>" + str[i] + "</td></tr>";
+				}
+			}
+		}
+		miscInfo += "</table>";
+		return miscInfo.equals("<table border=\"1\"></table>") ? "" : miscInfo;
+	}
+
+	private static String parsePMID(ImportInformation info, String line) {
+		return info.isPMIDColumnEnabled() ? line.split(info.getDelimiter())[info.getPMIDColumn()] : "";
+	}
+
+	private static void assertParsesLikeOldParser(ImportInformation info) {
+		ImportPlan plan = new ImportPlan(info);
+		RowTokenizer tokenizer = plan.createTokenizer();
+		StringBuilder buffer = new StringBuilder();
+		int complete = 0;
+		for (int row = info.getFirstDataRow(); row < LINES.length; row++) {
+			String line = LINES[row];
+			tokenizer.reset(line);
+			String expected = parseMiscInfo(info, line);
+			if (expected == null) {
+				assertFalse(line, plan.isComplete(tokenizer));
+				continue;
+			}
+			assertTrue(line, plan.isComplete(tokenizer));
+			complete++;
+			assertEquals(line, expected,
+					ImportPlan.formatMiscInfo(plan.getMiscColumnNames(), plan.getMiscValues(tokenizer, buffer)));
+			assertEquals(line, parsePMID(info, line), plan.getPMID(tokenizer));
+			assertEquals(line, info.isSyscodeFixedReg() ? info.getDataSourceReg()
+					: DataSource.getExistingBySystemCode(line.split("\t")[0]), plan.getRegulatorDataSource(tokenizer));
+		}
+		// the rows with empty trailing columns are skipped by both
+		assertEquals(4, complete);
+	}
+
+	@Test
+	public void testWithPMIDColumn() throws IOException {
+		ImportInformation info = createInformation();
+		info.setPMIDColumnEnabled(true);
+		info.setPMIDColumn(4);
+		assertParsesLikeOldParser(info);
+	}
+
+	@Test
+	public void testWithoutPMIDColumn() throws IOException {
+		ImportInformation info = createInformation();
+		info.setPMIDColumnEnabled(false);
+		assertParsesLikeOldParser(info);
+	}
+
+	@Test
+	public void testFixedDataSources() throws IOException {
+		ImportInformation info = createInformation();
+		info.setSyscodeFixedReg(true);
+		info.setDataSourceReg(DataSource.getBySystemCode("L"));
+		info.setSyscodeFixedTar(true);
+		info.setDataSourceTar(DataSource.getBySystemCode("En"));
+		info.setPMIDColumnEnabled(true);
+		info.setPMIDColumn(4);
+		assertParsesLikeOldParser(info);
+		// the system code columns are misc columns now
+		List<String> names = new ArrayList<String>();
+		for (String name : new ImportPlan(info).getMiscColumnNames()) {
+			names.add(name);
+		}
+		assertTrue(names.contains("SysReg"));
+		assertTrue(names.contains("SysTar"));
+	}
+}
@@ -0,0 +1,101 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author mku
+ */
+public class LongIntMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		LongIntMap map = new LongIntMap();
+		map.put(0, 10);
+		map.put(1L << 40, 11);
+		map.put(Long.MAX_VALUE, 12);
+		assertEquals(3, map.size());
+		assertEquals(10, map.get(0, -1));
+		assertEquals(11, map.get(1L << 40, -1));
+		assertEquals(12, map.get(Long.MAX_VALUE, -1));
+		assertEquals(-1, map.get(1, -1));
+	}
+
+	@Test
+	public void testOverwrite() {
+		LongIntMap map = new LongIntMap();
+		map.put(7, 1);
+		map.put(7, 2);
+		assertEquals(1, map.size());
+		assertEquals(2, map.get(7, -1));
+	}
+
+	@Test
+	public void testResize() {
+		// starts small, so it is rehashed several times
+		LongIntMap map = new LongIntMap(1);
+		int count = 100000;
+		for (int i = 0; i < count; i++) {
+			// keys that differ only in the high bits, like edge keys
+			map.put((long) i << 32 | 5, i);
+		}
+		assertEquals(count, map.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, map.get((long) i << 32 | 5, -1));
+		}
+		assertEquals(-1, map.get((long) count << 32 | 5, -1));
+	}
+
+	@Test
+	public void testClear() {
+		LongIntMap map = new LongIntMap(4);
+		for (int i = 0; i < 100; i++) {
+			map.put(i, i);
+		}
+		map.clear();
+		assertEquals(0, map.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(-1, map.get(i, -1));
+		}
+		map.put(3, 30);
+		assertEquals(1, map.size());
+		assertEquals(30, map.get(3, -1));
+	}
+
+	@Test
+	public void testCopy() {
+		LongIntMap map = new LongIntMap();
+		map.put(1, 1);
+		LongIntMap copy = new LongIntMap(map);
+		copy.put(1, 2);
+		copy.put(2, 2);
+		assertEquals(1, map.get(1, -1));
+		assertEquals(-1, map.get(2, -1));
+		assertEquals(1, map.size());
+		assertEquals(2, copy.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeKey() {
+		new LongIntMap().put(-1, 0);
+	}
+}
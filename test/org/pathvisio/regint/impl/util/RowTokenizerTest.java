@@ -0,0 +1,113 @@
+// RegInt Plugin for PathVisio
+// Visualize regulatory interactions in the side panel of PathVisio
+// Copyright 2015 BiGCaT Bioinformatics
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+
+package org.pathvisio.regint.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link RowTokenizer} with {@link String#split(String)}, which the
+ * importer used before.
+ *
+ * @author mku
+ */
+public class RowTokenizerTest {
+
+	private static final String[] ROWS = { "", "a", "a\tb", "a\t\tb", "\ta", "a\t", "a\t\t", "\t\t", "\t",
+			"ENSG0001\tENSG0002\t12345\tbinding\t" };
+
+	private static void assertSplitsLike(String delimiter, String row) {
+		String[] expected = row.split(Pattern.quote(delimiter));
+		RowTokenizer tokenizer = new RowTokenizer(delimiter);
+		tokenizer.reset(row);
+		assertEquals("column count of \"" + row + "\"", expected.length, tokenizer.getColumnCount());
+		for (int col = 0; col < expected.length; col++) {
+			assertEquals(expected[col], tokenizer.getColumn(col));
+		}
+	}
+
+	@Test
+	public void testSplitsLikeStringSplit() {
+		for (String row : ROWS) {
+			assertSplitsLike("\t", row);
+		}
+	}
+
+	@Test
+	public void testTrailingEmptyColumns() {
+		RowTokenizer tokenizer = new RowTokenizer("\t");
+		tokenizer.reset("a\tb\t\t");
+		assertEquals(2, tokenizer.getColumnCount());
+		assertTrue(tokenizer.isEmpty(2));
+		assertTrue(tokenizer.isEmpty(3));
+		assertEquals("", tokenizer.getColumn(3));
+		// not counted, but still missing beyond the last delimiter
+		assertTrue(tokenizer.isEmpty(10));
+		assertEquals("", tokenizer.getColumn(10));
+	}
+
+	@Test
+	public void testLiteralDelimiter() {
+		for (String row : new String[] { "a|b", "a||b|", "a.b|c", "|" }) {
+			assertSplitsLike("|", row);
+		}
+		for (String row : new String[] { "a, b, c", "a,, b", "a, b, ", ", " }) {
+			assertSplitsLike(", ", row);
+		}
+	}
+
+	@Test
+	public void testPartOfSequence() {
+		String text = "x\ty\nR1\tT1\t\nR2\tT2";
+		RowTokenizer tokenizer = new RowTokenizer("\t");
+		tokenizer.reset(text, 4, 10);
+		assertEquals(2, tokenizer.getColumnCount());
+		assertEquals("R1", tokenizer.getColumn(0));
+		assertEquals("T1", tokenizer.getColumn(1));
+	}
+
+	@Test
+	public void testManyColumns() {
+		StringBuilder row = new StringBuilder();
+		for (int col = 0; col < 40; col++) {
+			if (col > 0) {
+				row.append(',');
+			}
+			row.append(col);
+		}
+		assertSplitsLike(",", row.toString());
+	}
+
+	@Test
+	public void testQuotedColumns() {
+		RowTokenizer tokenizer = new RowTokenizer(",", true);
+		tokenizer.reset("\"a,b\",\"say \"\"hi\"\"\",c");
+		assertEquals(3, tokenizer.getColumnCount());
+		assertEquals("a,b", tokenizer.getColumn(0));
+		assertEquals("say \"hi\"", tokenizer.getColumn(1));
+		assertEquals("c", tokenizer.getColumn(2));
+		StringBuilder builder = new StringBuilder();
+		tokenizer.appendColumn(builder, 1);
+		assertEquals("say \"hi\"", builder.toString());
+	}
+}